@@ -0,0 +1,165 @@
+package com.distkv.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator for the controller's REST API. Each simulated client runs on
+ * its own virtual thread and issues PUT/GET requests back to back, so run it once with the
+ * cluster on platform threads and once with VIRTUAL_THREADS=true to compare the two modes.
+ *
+ * <pre>
+ *   java -jar kv-bench/target/kv-bench-1.0-SNAPSHOT.jar --url http://localhost:8080 --concurrency 2000
+ * </pre>
+ */
+public class LoadBenchmark {
+
+    private static final String VALUE_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+    private final String url;
+    private final int concurrency;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final int keys;
+    private final double readRatio;
+    private final String value;
+    private final HttpClient client;
+
+    private final AtomicLong ok = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean recording;
+    private volatile boolean running = true;
+
+    LoadBenchmark(Map<String, String> options) {
+        this.url = options.getOrDefault("url", "http://localhost:8080") + "/api/kv/";
+        this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1000"));
+        this.durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        this.warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        this.keys = Integer.parseInt(options.getOrDefault("keys", "10000"));
+        this.readRatio = Double.parseDouble(options.getOrDefault("read-ratio", "0.8"));
+        this.value = randomValue(Integer.parseInt(options.getOrDefault("value-size", "100")));
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        new LoadBenchmark(options).run();
+    }
+
+    void run() throws InterruptedException {
+        System.out.printf("Target %s, %d clients, %ds warmup + %ds measured, %d keys, %.0f%% reads%n",
+                url, concurrency, warmupSeconds, durationSeconds, keys, readRatio * 100);
+
+        List<long[]> latencies = new ArrayList<>();
+        List<int[]> counts = new ArrayList<>();
+        long elapsedNanos;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                // Each client has its own id so the per-client rate limit doesn't dominate
+                String clientId = "bench-" + i;
+                long[] samples = new long[1 << 12];
+                int[] count = new int[1];
+                latencies.add(samples);
+                counts.add(count);
+                clients.execute(() -> runClient(clientId, samples, count));
+            }
+
+            Thread.sleep(warmupSeconds * 1000L);
+            recording = true;
+            long start = System.nanoTime();
+            Thread.sleep(durationSeconds * 1000L);
+            recording = false;
+            elapsedNanos = System.nanoTime() - start;
+            running = false;
+        }
+        // Closing the executor waited for every client, so their samples are safe to read
+        report(latencies, counts, elapsedNanos);
+    }
+
+    private void runClient(String clientId, long[] samples, int[] count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            String key = "bench-key-" + random.nextInt(keys);
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url + key))
+                    .header("X-Client-Id", clientId)
+                    .timeout(Duration.ofSeconds(10));
+            if (random.nextDouble() < readRatio) {
+                request.GET();
+            } else {
+                request.header("Content-Type", "text/plain").POST(HttpRequest.BodyPublishers.ofString(value));
+            }
+
+            long start = System.nanoTime();
+            int status;
+            try {
+                status = client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (Exception e) {
+                status = -1;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            if (!recording) continue;
+            if (status == 429) {
+                rejected.incrementAndGet();
+            } else if (status >= 200 && status < 300 || status == 404) {
+                ok.incrementAndGet();
+                // The first 4k samples per client are plenty for the percentiles
+                if (count[0] < samples.length) samples[count[0]++] = elapsed;
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    private void report(List<long[]> latencies, List<int[]> counts, long elapsedNanos) {
+        int total = counts.stream().mapToInt(c -> c[0]).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int i = 0; i < latencies.size(); i++) {
+            System.arraycopy(latencies.get(i), 0, all, offset, counts.get(i)[0]);
+            offset += counts.get(i)[0];
+        }
+        Arrays.sort(all);
+
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Throughput: %.0f req/s (ok %d, rejected 429 %d, failed %d)%n",
+                ok.get() / seconds, ok.get(), rejected.get(), failed.get());
+        System.out.printf("Latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99),
+                percentile(all, 0.999), all.length > 0 ? all[all.length - 1] / 1e6 : 0);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(sorted.length * p) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    private static String randomValue(int size) {
+        StringBuilder sb = new StringBuilder(size);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < size; i++) {
+            sb.append(VALUE_CHARS.charAt(random.nextInt(VALUE_CHARS.length())));
+        }
+        return sb.toString();
+    }
+}
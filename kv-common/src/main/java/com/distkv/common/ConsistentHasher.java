@@ -3,11 +3,19 @@ package com.distkv.common;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class ConsistentHasher {
     private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final Map<String, Integer> tokenCounts = new HashMap<>();
+    // Lookups happen on every request and vastly outnumber ring changes. A lock rather
+    // than synchronized also keeps waiting virtual threads from pinning their carrier.
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final int virtualNodes;
 
     public ConsistentHasher(int virtualNodes) {
@@ -15,25 +23,82 @@ public class ConsistentHasher {
     }
 
     public void addWorker(String workerId) {
-        for (int i = 0; i < virtualNodes; i++) {
-            long hash = hash(workerId + i);
-            ring.put(hash, workerId);
+        addWorker(workerId, virtualNodes);
+    }
+
+    public void addWorker(String workerId, int nodes) {
+        lock.writeLock().lock();
+        try {
+            removeWorker(workerId);
+            setVirtualNodes(workerId, nodes);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public void removeWorker(String workerId) {
-        ring.values().removeIf(id -> id.equals(workerId));
+        lock.writeLock().lock();
+        try {
+            ring.values().removeIf(id -> id.equals(workerId));
+            tokenCounts.remove(workerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Grows or shrinks a worker's share of the ring. Tokens are derived from
+     * (workerId, index), so only the tokens above the smaller count move and
+     * every other key keeps its owner.
+     */
+    public void setVirtualNodes(String workerId, int nodes) {
+        lock.writeLock().lock();
+        try {
+            int current = tokenCounts.getOrDefault(workerId, 0);
+            for (int i = current; i < nodes; i++) {
+                ring.put(hash(workerId + i), workerId);
+            }
+            for (int i = nodes; i < current; i++) {
+                ring.remove(hash(workerId + i), workerId);
+            }
+            tokenCounts.put(workerId, Math.max(nodes, 0));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getVirtualNodes(String workerId) {
+        lock.readLock().lock();
+        try {
+            return tokenCounts.getOrDefault(workerId, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public String getPrimary(String key) {
-        if (ring.isEmpty()) return null;
-        long hash = hash(key);
-        SortedMap<Long, String> tailMap = ring.tailMap(hash);
-        long targetHash = tailMap.isEmpty() ? ring.firstKey() : tailMap.firstKey();
-        return ring.get(targetHash);
+        lock.readLock().lock();
+        try {
+            if (ring.isEmpty()) return null;
+            long hash = hash(key);
+            SortedMap<Long, String> tailMap = ring.tailMap(hash);
+            long targetHash = tailMap.isEmpty() ? ring.firstKey() : tailMap.firstKey();
+            return ring.get(targetHash);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public String[] getReplicas(String key, int count) {
+        lock.readLock().lock();
+        try {
+            return replicasFor(key, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private String[] replicasFor(String key, int count) {
         if (ring.isEmpty()) return new String[0];
         String[] replicas = new String[count];
         long hash = hash(key);
@@ -0,0 +1,23 @@
+package com.distkv.common;
+
+/**
+ * The key order shared by workers and the controller. Workers sort with Postgres "C"
+ * collation, i.e. by UTF-8 bytes, which is code point order. String.compareTo compares
+ * UTF-16 code units instead and disagrees for characters outside the BMP.
+ */
+public final class KeyOrder {
+
+    private KeyOrder() {
+    }
+
+    public static int compare(String a, String b) {
+        int i = 0;
+        while (i < a.length() && i < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(i);
+            if (ca != cb) return Integer.compare(ca, cb);
+            i += Character.charCount(ca);
+        }
+        return Integer.compare(a.length() - i, b.length() - i);
+    }
+}
@@ -0,0 +1,174 @@
+package com.distkv.controller.admission;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sheds load before it reaches the workers: every client gets a token bucket, and every
+ * endpoint a fixed number of in-flight requests. A request that can't get a slot within
+ * the queue-time budget is rejected instead of waiting behind everyone else. Long-lived
+ * streams are capped separately, per client and per endpoint, for as long as they are open.
+ */
+@Component
+@Slf4j
+public class AdmissionController {
+
+    @Value("${admission.max-concurrent-per-endpoint:64}")
+    private int maxConcurrent;
+
+    @Value("${admission.max-queue-ms:200}")
+    private long maxQueueMs;
+
+    @Value("${admission.client-rate:200}")
+    private double clientRate;
+
+    @Value("${admission.client-burst:400}")
+    private double clientBurst;
+
+    @Value("${admission.max-streams-per-endpoint:256}")
+    private int maxStreams;
+
+    @Value("${admission.max-streams-per-client:4}")
+    private int maxStreamsPerClient;
+
+    private final Map<String, Semaphore> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> streamEndpoints = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> clientStreams = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> clients = new ConcurrentHashMap<>();
+
+    /**
+     * Admits one request, or throws {@link AdmissionRejectedException}. The returned
+     * permit must be closed when the request's work is done.
+     */
+    public Permit admit(String endpoint, String clientId) {
+        checkRate(clientId);
+
+        Semaphore slots = endpoints.computeIfAbsent(endpoint, e -> new Semaphore(maxConcurrent));
+        try {
+            if (!slots.tryAcquire(maxQueueMs, TimeUnit.MILLISECONDS)) {
+                log.warn("Shedding {} request from {}: no slot within {} ms", endpoint, clientId, maxQueueMs);
+                throw new AdmissionRejectedException("Too many concurrent " + endpoint + " requests", 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AdmissionRejectedException("Interrupted while waiting for a " + endpoint + " slot", 1);
+        }
+        return new Permit(slots);
+    }
+
+    /**
+     * Admits one long-lived stream, or throws {@link AdmissionRejectedException}. Streams hold
+     * their slots until the returned permit is closed, so they don't wait for one: a client
+     * or endpoint at its limit is rejected straight away.
+     */
+    public Permit admitStream(String endpoint, String clientId) {
+        checkRate(clientId);
+
+        Semaphore endpointSlots = streamEndpoints.computeIfAbsent(endpoint, e -> new Semaphore(maxStreams));
+        if (!endpointSlots.tryAcquire()) {
+            log.warn("Rejecting {} stream from {}: {} streams open", endpoint, clientId, maxStreams);
+            throw new AdmissionRejectedException("Too many open " + endpoint + " streams", 1);
+        }
+        Semaphore clientSlots = clientStreams.computeIfAbsent(endpoint + "/" + clientId, k -> new Semaphore(maxStreamsPerClient));
+        if (!clientSlots.tryAcquire()) {
+            endpointSlots.release();
+            throw new AdmissionRejectedException("Client " + clientId + " already has " + maxStreamsPerClient
+                    + " open " + endpoint + " streams", 1);
+        }
+        return new Permit(endpointSlots, clientSlots);
+    }
+
+    /**
+     * Applies only the per-client rate limit, for long-lived requests that shouldn't hold an endpoint slot.
+     */
+    public void checkRate(String clientId) {
+        TokenBucket bucket = clients.computeIfAbsent(clientId, id -> new TokenBucket(clientRate, clientBurst));
+        if (!bucket.tryAcquire()) {
+            throw new AdmissionRejectedException("Rate limit exceeded for client " + clientId, bucket.retryAfterSeconds());
+        }
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void evictIdleClients() {
+        clients.values().removeIf(TokenBucket::isFull);
+        clientStreams.values().removeIf(slots -> slots.availablePermits() == maxStreamsPerClient);
+    }
+
+    public static class Permit implements AutoCloseable {
+        private final Semaphore[] slots;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(Semaphore... slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                for (Semaphore slot : slots) slot.release();
+            }
+        }
+    }
+
+    static class TokenBucket {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final double rate;
+        private final double burst;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double rate, double burst) {
+            this.rate = rate;
+            this.burst = burst;
+            this.tokens = burst;
+        }
+
+        boolean tryAcquire() {
+            lock.lock();
+            try {
+                refill();
+                if (tokens < 1) return false;
+                tokens -= 1;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long retryAfterSeconds() {
+            lock.lock();
+            try {
+                refill();
+                return Math.max(1, (long) Math.ceil((1 - tokens) / rate));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // A full bucket behaves exactly like a fresh one, so it can be dropped
+        boolean isFull() {
+            lock.lock();
+            try {
+                refill();
+                return tokens >= burst;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * rate);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.distkv.controller.admission;
+
+import lombok.Getter;
+
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
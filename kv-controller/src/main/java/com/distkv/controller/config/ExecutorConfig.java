@@ -0,0 +1,71 @@
+package com.distkv.controller.config;
+
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor for everything that blocks on a worker: replica fan-out, read repair,
+ * re-replication and streamed scan responses. With
+ * spring.threads.virtual.enabled (which also moves Tomcat onto virtual threads) each task
+ * gets its own virtual thread, so concurrency is bounded by admission control rather than
+ * platform thread counts. On platform threads the pool and its queue are bounded, and a
+ * full queue rejects the task instead of growing the thread count.
+ */
+@Configuration
+@Slf4j
+public class ExecutorConfig {
+
+    // Interrupts running tasks on shutdown. The default, ExecutorService.close(), waits for
+    // every queued fan-out and re-replication to finish first.
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService blockingExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                            @Value("${executor.platform-threads:200}") int platformThreads,
+                                            @Value("${executor.queue-capacity:2000}") int queueCapacity) {
+        if (virtualThreads) {
+            log.info("Running blocking work on virtual threads");
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        log.info("Running blocking work on up to {} platform threads, {} queued tasks", platformThreads, queueCapacity);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(platformThreads, platformThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("blocking-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // The controller's gRPC server only carries worker heartbeats. They get their own threads so
+    // they never queue behind data-path work, or get rejected with it, when blockingExecutor is
+    // saturated; a late heartbeat would time a healthy worker out of the ring. There is one
+    // stream per worker, so an unbounded pool stays small.
+    @Bean
+    public GrpcServerConfigurer controlPlaneGrpcServerConfigurer(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        ExecutorService executor = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool(new CustomizableThreadFactory("grpc-control-"));
+        return serverBuilder -> serverBuilder.executor(executor);
+    }
+
+    // Being an Executor, blockingExecutor stops Boot from creating applicationTaskExecutor, and
+    // MVC async (scan bodies, SSE) would otherwise fall back to a new platform thread per request
+    @Bean
+    public WebMvcConfigurer blockingExecutorMvcConfigurer(ExecutorService blockingExecutor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(new ConcurrentTaskExecutor(blockingExecutor));
+            }
+        };
+    }
+}
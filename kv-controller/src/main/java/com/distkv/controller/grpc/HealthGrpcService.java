@@ -20,7 +20,7 @@ public class HealthGrpcService extends HealthServiceGrpc.HealthServiceImplBase {
             @Override
             public void onNext(HeartbeatRequest request) {
                 boolean isNew = !registry.getActiveWorkers().containsKey(request.getWorkerId());
-                registry.registerHeartbeat(request.getWorkerId(), request.getAddress(), request.getPort());
+                registry.registerHeartbeat(request.getWorkerId(), request.getAddress(), request.getPort(), request.getLoad());
                 
                 HeartbeatResponse.Builder response = HeartbeatResponse.newBuilder().setStatus("OK");
                 
@@ -1,16 +1,29 @@
 package com.distkv.controller.grpc;
 
+import com.distkv.common.KeyOrder;
 import com.distkv.controller.registry.WorkerRegistry;
 import com.distkv.grpc.*;
+import io.grpc.Context;
+import io.grpc.Deadline;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -18,9 +31,15 @@ import java.util.concurrent.ConcurrentHashMap;
 public class KVGrpcClientService {
 
     private final WorkerRegistry registry;
+    private final ExecutorService blockingExecutor;
     private final Map<String, ManagedChannel> channels = new ConcurrentHashMap<>();
     private final Map<String, KVServiceGrpc.KVServiceBlockingStub> stubs = new ConcurrentHashMap<>();
 
+    // Background work (read repair, re-replication) isn't tied to a client request
+    private static Deadline defaultDeadline() {
+        return Deadline.after(5, java.util.concurrent.TimeUnit.SECONDS);
+    }
+
     private KVServiceGrpc.KVServiceBlockingStub getStub(String workerId) {
         WorkerRegistry.WorkerInfo info = registry.getActiveWorkers().get(workerId);
         if (info == null) {
@@ -38,15 +57,21 @@ public class KVGrpcClientService {
         });
     }
 
-    public PutResponse put(String workerId, String key, String value, Map<String, Long> vectorClock) {
+    public PutResponse put(String workerId, String key, String value, Map<String, Long> vectorClock, long expiresAt) {
+        return put(workerId, key, value, vectorClock, expiresAt, defaultDeadline());
+    }
+
+    public PutResponse put(String workerId, String key, String value, Map<String, Long> vectorClock, long expiresAt,
+                           Deadline deadline) {
         KVServiceGrpc.KVServiceBlockingStub stub = getStub(workerId);
         if (stub == null) return PutResponse.newBuilder().setSuccess(false).setMessage("Worker offline").build();
         
         try {
-            return stub.withDeadlineAfter(5, java.util.concurrent.TimeUnit.SECONDS).put(PutRequest.newBuilder()
+            return stub.withDeadline(deadline).put(PutRequest.newBuilder()
                     .setKey(key)
                     .setValue(value)
                     .putAllVectorClock(vectorClock)
+                    .setExpiresAt(expiresAt)
                     .build());
         } catch (Exception e) {
             log.error("gRPC PUT failed for worker {}: {}", workerId, e.getMessage());
@@ -55,26 +80,36 @@ public class KVGrpcClientService {
     }
 
     public GetResponse get(String workerId, String key) {
+        return get(workerId, key, defaultDeadline());
+    }
+
+    public GetResponse get(String workerId, String key, Deadline deadline) {
         KVServiceGrpc.KVServiceBlockingStub stub = getStub(workerId);
         if (stub == null) return GetResponse.newBuilder().setFound(false).build();
         
         try {
-            return stub.withDeadlineAfter(5, java.util.concurrent.TimeUnit.SECONDS).get(GetRequest.newBuilder().setKey(key).build());
+            return stub.withDeadline(deadline).get(GetRequest.newBuilder().setKey(key).build());
         } catch (Exception e) {
             log.error("gRPC GET failed for worker {}: {}", workerId, e.getMessage());
             throw e;
         }
     }
 
-    public ReplicateResponse replicate(String workerId, String key, String value, Map<String, Long> vectorClock) {
+    public ReplicateResponse replicate(String workerId, String key, String value, Map<String, Long> vectorClock, long expiresAt) {
+        return replicate(workerId, key, value, vectorClock, expiresAt, defaultDeadline());
+    }
+
+    public ReplicateResponse replicate(String workerId, String key, String value, Map<String, Long> vectorClock, long expiresAt,
+                                       Deadline deadline) {
         KVServiceGrpc.KVServiceBlockingStub stub = getStub(workerId);
         if (stub == null) return ReplicateResponse.newBuilder().setSuccess(false).build();
         
         try {
-            return stub.withDeadlineAfter(5, java.util.concurrent.TimeUnit.SECONDS).replicate(ReplicateRequest.newBuilder()
+            return stub.withDeadline(deadline).replicate(ReplicateRequest.newBuilder()
                     .setKey(key)
                     .setValue(value)
                     .putAllVectorClock(vectorClock)
+                    .setExpiresAt(expiresAt)
                     .build());
         } catch (Exception e) {
             log.error("gRPC REPLICATE failed for worker {}: {}", workerId, e.getMessage());
@@ -82,19 +117,158 @@ public class KVGrpcClientService {
         }
     }
 
-    public Map<String, String> getAll(String workerId) {
+    public DeleteResponse delete(String workerId, String key, Map<String, Long> vectorClock) {
+        return delete(workerId, key, vectorClock, defaultDeadline());
+    }
+
+    public DeleteResponse delete(String workerId, String key, Map<String, Long> vectorClock, Deadline deadline) {
+        KVServiceGrpc.KVServiceBlockingStub stub = getStub(workerId);
+        if (stub == null) return DeleteResponse.newBuilder().setSuccess(false).build();
+
+        try {
+            return stub.withDeadline(deadline).delete(DeleteRequest.newBuilder()
+                    .setKey(key)
+                    .putAllVectorClock(vectorClock)
+                    .build());
+        } catch (Exception e) {
+            log.error("gRPC DELETE failed for worker {}: {}", workerId, e.getMessage());
+            throw e;
+        }
+    }
+
+    public Map<String, String> getAll(String workerId, Deadline deadline) {
         KVServiceGrpc.KVServiceBlockingStub stub = getStub(workerId);
         if (stub == null) return null;
 
         Map<String, String> results = new HashMap<>();
         try {
-            stub.withDeadlineAfter(10, java.util.concurrent.TimeUnit.SECONDS)
+            stub.withDeadline(deadline)
                 .sync(SyncRequest.newBuilder().setWorkerId("controller").build())
-                .forEachRemaining(entry -> results.put(entry.getKey(), entry.getValue()));
+                .forEachRemaining(entry -> {
+                    if (!entry.getDeleted()) results.put(entry.getKey(), entry.getValue());
+                });
             return results;
         } catch (Exception e) {
             log.error("gRPC SYNC/GetAll failed for worker {}: {}", workerId, e.getMessage());
             throw e;
         }
     }
+
+    /**
+     * Scans every active worker in parallel and merges their key-ordered streams, keeping
+     * the newest version each key's current replicas hold and dropping tombstones. Entries are handed to
+     * {@code sink} as they are merged. Returns the last key of the page if more results
+     * may follow, or null once the range is exhausted.
+     */
+    public String scan(ScanRequest request, Deadline deadline, Consumer<ScanEntry> sink) {
+        List<ScanStream> streams = new ArrayList<>();
+        for (String workerId : registry.getActiveWorkers().keySet()) {
+            KVServiceGrpc.KVServiceBlockingStub stub = getStub(workerId);
+            if (stub != null) streams.add(new ScanStream(workerId, stub.withDeadline(deadline), request));
+        }
+
+        try {
+            CompletableFuture.allOf(streams.stream()
+                    .map(stream -> CompletableFuture.runAsync(stream::advance, blockingExecutor))
+                    .toArray(CompletableFuture[]::new)).join();
+
+            PriorityQueue<ScanStream> heap = new PriorityQueue<>(Comparator.comparing((ScanStream stream) -> stream.head.getKey(), KeyOrder::compare));
+            for (ScanStream stream : streams) {
+                if (stream.head != null) heap.add(stream);
+            }
+
+            int emitted = 0;
+            while (!heap.isEmpty()) {
+                String key = heap.peek().head.getKey();
+                List<String> owners = Arrays.asList(registry.getHasher().getReplicas(key, 3));
+                ScanEntry latest = null;
+                boolean truncated = false;
+                while (!heap.isEmpty() && heap.peek().head.getKey().equals(key)) {
+                    ScanStream stream = heap.poll();
+                    // Former owners (after a rebalance, restore or sync) keep copies that never get
+                    // the tombstone, so only the key's current replicas decide what it holds
+                    if (owners.contains(stream.workerId)
+                            && (latest == null || clockSum(stream.head) > clockSum(latest))) {
+                        latest = stream.head;
+                    }
+                    stream.advance();
+                    if (stream.head != null) heap.add(stream);
+                    else if (stream.truncated()) truncated = true;
+                }
+
+                if (latest != null && !latest.getDeleted()) {
+                    sink.accept(latest);
+                    emitted++;
+                }
+                // A worker that stopped at the limit may hold keys past this one that we
+                // haven't seen, so the page has to end here
+                if (truncated || emitted == request.getLimit()) return key;
+            }
+            return null;
+        } finally {
+            streams.forEach(ScanStream::close);
+        }
+    }
+
+    /**
+     * Subscribes to a worker's change stream. Cancelling the returned context ends the
+     * subscription; returns null if the worker is offline.
+     */
+    public Context.CancellableContext watch(String workerId, long afterSequence, StreamObserver<ChangeEvent> observer) {
+        KVServiceGrpc.KVServiceBlockingStub stub = getStub(workerId);
+        if (stub == null) return null;
+
+        Context.CancellableContext context = Context.current().withCancellation();
+        context.run(() -> KVServiceGrpc.newStub(stub.getChannel())
+                .watch(WatchRequest.newBuilder().setAfterSequence(afterSequence).build(), observer));
+        return context;
+    }
+
+    private static long clockSum(ScanEntry entry) {
+        return entry.getVectorClockMap().values().stream().mapToLong(L -> L).sum();
+    }
+
+    private static class ScanStream {
+        private final String workerId;
+        private final KVServiceGrpc.KVServiceBlockingStub stub;
+        private final ScanRequest request;
+        private final Context.CancellableContext context = Context.current().withCancellation();
+        private Iterator<ScanEntry> iterator;
+        private ScanEntry head;
+        private int received;
+        private boolean failed;
+
+        ScanStream(String workerId, KVServiceGrpc.KVServiceBlockingStub stub, ScanRequest request) {
+            this.workerId = workerId;
+            this.stub = stub;
+            this.request = request;
+        }
+
+        void advance() {
+            head = null;
+            if (failed) return;
+            try {
+                if (iterator == null) {
+                    // Bind the call to our context so close() can cancel it mid-stream
+                    iterator = context.call(() -> stub.scan(request));
+                }
+                if (iterator.hasNext()) {
+                    head = iterator.next();
+                    received++;
+                }
+            } catch (Exception e) {
+                // The other replicas of this worker's keys are still being scanned
+                log.warn("gRPC SCAN failed for worker {}: {}", workerId, e.getMessage());
+                failed = true;
+            }
+        }
+
+        boolean truncated() {
+            return !failed && request.getLimit() > 0 && received >= request.getLimit();
+        }
+
+        void close() {
+            context.cancel(null);
+        }
+    }
 }
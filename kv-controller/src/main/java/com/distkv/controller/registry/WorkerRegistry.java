@@ -1,26 +1,42 @@
 package com.distkv.controller.registry;
 
 import com.distkv.common.ConsistentHasher;
+import com.distkv.grpc.GetResponse;
+import com.distkv.grpc.WorkerLoad;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class WorkerRegistry {
     private static final int VIRTUAL_NODES = 100;
+    private static final int MIN_VIRTUAL_NODES = 10;
+    private static final int MAX_VIRTUAL_NODES = 400;
+    private static final int MAX_TOKEN_MOVES = 10; // per rebalance round
+    private static final double HOT_LOAD_FACTOR = 1.5;
+    private static final long REBALANCE_COOLDOWN_MS = 5 * 60 * 1000;
     private static final long HEARTBEAT_TIMEOUT = 6000; // 6 seconds
 
     @Getter
     private final ConsistentHasher hasher = new ConsistentHasher(VIRTUAL_NODES);
     private final Map<String, WorkerInfo> activeWorkers = new ConcurrentHashMap<>();
     private final Set<String> allKeys = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> rebalanceCooldowns = new ConcurrentHashMap<>();
+    private final ExecutorService blockingExecutor;
 
     // We'll need access to the gRPC client to trigger re-replication
     // Using a setter or lazy injection to avoid circular dependency
@@ -34,12 +50,21 @@ public class WorkerRegistry {
         allKeys.add(key);
     }
 
-    public void registerHeartbeat(String workerId, String address, int port) {
+    public void registerHeartbeat(String workerId, String address, int port, WorkerLoad load) {
         if (!activeWorkers.containsKey(workerId)) {
-            log.info("New worker registered: {} at {}:{}", workerId, address, port);
-            hasher.addWorker(workerId);
+            int nodes = weightedVirtualNodes(load.getCapacityWeight());
+            log.info("New worker registered: {} at {}:{} with {} virtual nodes", workerId, address, port, nodes);
+            hasher.addWorker(workerId, nodes);
         }
-        activeWorkers.put(workerId, new WorkerInfo(address, port, System.currentTimeMillis()));
+        activeWorkers.put(workerId, new WorkerInfo(address, port, System.currentTimeMillis(),
+                hasher.getVirtualNodes(workerId), LoadStats.from(load)));
+    }
+
+    private int weightedVirtualNodes(double capacityWeight) {
+        // Workers that don't report a weight get the default share
+        double weight = capacityWeight > 0 ? capacityWeight : 1.0;
+        int nodes = (int) Math.round(VIRTUAL_NODES * weight);
+        return Math.max(MIN_VIRTUAL_NODES, Math.min(MAX_VIRTUAL_NODES, nodes));
     }
 
     public Map<String, WorkerInfo> getActiveWorkers() {
@@ -53,56 +78,169 @@ public class WorkerRegistry {
             boolean timedOut = now - entry.getValue().getLastHeartbeat() > 6000;
             if (timedOut) {
                 log.warn("Worker {} timed out and removed", entry.getKey());
-                hasher.removeWorker(entry.getKey());
-                reReplicateKeysFrom(entry.getKey());
+                RingChange change = changeRing(() -> hasher.removeWorker(entry.getKey()));
+                reReplicate(change.keys(), "removal of " + entry.getKey());
                 return true;
             }
             return false;
         });
     }
 
-    private void reReplicateKeysFrom(String failedWorkerId) {
-        log.info("Starting proactive re-replication for failed worker: {}", failedWorkerId);
-        CompletableFuture.runAsync(() -> {
-            for (String key : allKeys) {
-                // Check if the failed worker was supposed to have this key
-                // Note: getReplicas uses the CURRENT ring, so we can't easily see if it WAS there
-                // But we can check if it SHOULD be there now and if it's "new"
-                String[] currentReplicas = hasher.getReplicas(key, 3);
-                
-                // If the failed worker was historically a replica, it's missing now.
-                // We don't have historical data easily, but we know the ring shifted.
-                // Any key that has a new node in its top 3 needs a sync.
-                
-                // Let's find one healthy replica to serve as source
-                String source = null;
-                for (String r : currentReplicas) {
-                    if (r != null && !r.equals(failedWorkerId) && activeWorkers.containsKey(r)) {
-                        source = r;
-                        break;
-                    }
+    /**
+     * Moves a few tokens away from the hottest worker per round, and gives them back
+     * once its load (normalised by capacity weight) falls back to the cluster mean.
+     * Workers whose ranges just changed are left alone for a cooldown, so a single hot
+     * key that follows its tokens to another worker doesn't bounce between them.
+     */
+    @Scheduled(fixedRate = 30000)
+    public void rebalanceHotWorkers() {
+        if (activeWorkers.size() < 2) return;
+
+        Map<String, Double> normalisedLoad = new HashMap<>();
+        activeWorkers.forEach((id, info) -> normalisedLoad.put(id,
+                info.getLoad().getRequestRate() / Math.max(info.getLoad().getCapacityWeight(), 0.01)));
+        double meanLoad = normalisedLoad.values().stream().mapToDouble(d -> d).average().orElse(0);
+
+        String hottest = null;
+        for (Map.Entry<String, Double> entry : normalisedLoad.entrySet()) {
+            if (hottest == null || entry.getValue() > normalisedLoad.get(hottest)) {
+                hottest = entry.getKey();
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        String moved = null;
+        int current = 0;
+        int desired = 0;
+        if (meanLoad > 0 && normalisedLoad.get(hottest) > meanLoad * HOT_LOAD_FACTOR) {
+            if (coolingDown(hottest, now)) return;
+            current = hasher.getVirtualNodes(hottest);
+            desired = Math.max(current - MAX_TOKEN_MOVES, MIN_VIRTUAL_NODES);
+            moved = hottest;
+        } else {
+            for (Map.Entry<String, WorkerInfo> entry : activeWorkers.entrySet()) {
+                if (coolingDown(entry.getKey(), now)) continue;
+                int target = weightedVirtualNodes(entry.getValue().getLoad().getCapacityWeight());
+                current = hasher.getVirtualNodes(entry.getKey());
+                if (current != target && normalisedLoad.getOrDefault(entry.getKey(), 0.0) <= meanLoad) {
+                    desired = current < target
+                            ? Math.min(current + MAX_TOKEN_MOVES, target)
+                            : Math.max(current - MAX_TOKEN_MOVES, target);
+                    moved = entry.getKey();
+                    break;
                 }
+            }
+        }
+
+        if (moved == null || desired == current) return;
+        log.info("Rebalancing worker {}: {} -> {} virtual nodes", moved, current, desired);
+        String worker = moved;
+        int nodes = desired;
+        RingChange change = changeRing(() -> hasher.setVirtualNodes(worker, nodes));
 
-                if (source != null) {
-                    // Try to update all current replicas from the source
-                    for (String target : currentReplicas) {
-                        if (target != null && !target.equals(source)) {
-                            try {
-                                log.info("Checking/Syncing key '{}' to promoted/existing replica: {}", key, target);
-                                // Fetch from source and push to target
-                                var getRes = grpcClient.get(source, key);
-                                if (getRes.getFound()) {
-                                    grpcClient.put(target, key, getRes.getValue(), getRes.getVectorClockMap());
-                                }
-                            } catch (Exception e) {
-                                log.warn("Failed to re-replicate key '{}' to {}: {}", key, target, e.getMessage());
-                            }
-                        }
-                    }
+        // Both the worker that moved and those that took over its ranges wait out the cooldown
+        long until = now + REBALANCE_COOLDOWN_MS;
+        rebalanceCooldowns.put(moved, until);
+        change.gainedBy().forEach(id -> rebalanceCooldowns.put(id, until));
+        reReplicate(change.keys(), "rebalance of " + moved);
+    }
+
+    private boolean coolingDown(String workerId, long now) {
+        return rebalanceCooldowns.getOrDefault(workerId, 0L) > now;
+    }
+
+    /**
+     * Applies a ring change and returns the keys whose replica set it changed, plus the
+     * workers that became a replica for at least one of them. Only those keys need copying.
+     */
+    private RingChange changeRing(Runnable change) {
+        Map<String, Set<String>> before = new HashMap<>();
+        for (String key : allKeys) {
+            before.put(key, replicaSet(key));
+        }
+        change.run();
+
+        List<String> changedKeys = new ArrayList<>();
+        Set<String> gainedBy = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : before.entrySet()) {
+            Set<String> after = replicaSet(entry.getKey());
+            if (after.equals(entry.getValue())) continue;
+            changedKeys.add(entry.getKey());
+            for (String worker : after) {
+                if (!entry.getValue().contains(worker)) gainedBy.add(worker);
+            }
+        }
+        return new RingChange(changedKeys, gainedBy);
+    }
+
+    private Set<String> replicaSet(String key) {
+        Set<String> replicas = new HashSet<>();
+        for (String replica : hasher.getReplicas(key, 3)) {
+            if (replica != null) replicas.add(replica);
+        }
+        return replicas;
+    }
+
+    private record RingChange(List<String> keys, Set<String> gainedBy) {
+    }
+
+    private void reReplicate(List<String> keys, String reason) {
+        if (keys.isEmpty()) return;
+        log.info("Starting proactive re-replication of {} keys after {}", keys.size(), reason);
+        try {
+            blockingExecutor.execute(() -> {
+                for (String key : keys) {
+                    reReplicateKey(key, hasher.getReplicas(key, 3));
                 }
+                log.info("Background re-replication finished after {}", reason);
+            });
+        } catch (RejectedExecutionException e) {
+            // Read repair still fixes the affected keys as they are read
+            log.warn("Re-replication after {} dropped, executor saturated", reason);
+        }
+    }
+
+    /**
+     * Copies the newest version of a key, value or tombstone, to every replica holding an
+     * older one or none. Like read repair, the source is whichever replica has the newest
+     * clock, never just the first one that answers.
+     */
+    private void reReplicateKey(String key, String[] replicas) {
+        Map<String, GetResponse> responses = new HashMap<>();
+        GetResponse latest = null;
+        for (String replica : replicas) {
+            if (replica == null || !activeWorkers.containsKey(replica)) continue;
+            try {
+                GetResponse res = grpcClient.get(replica, key);
+                responses.put(replica, res);
+                if ((res.getFound() || res.getDeleted()) && (latest == null || clockSum(res) > clockSum(latest))) {
+                    latest = res;
+                }
+            } catch (Exception e) {
+                log.warn("Failed to read key '{}' from {} for re-replication: {}", key, replica, e.getMessage());
             }
-            log.info("Background re-replication finished for {}", failedWorkerId);
-        });
+        }
+        if (latest == null) return;
+
+        for (Map.Entry<String, GetResponse> entry : responses.entrySet()) {
+            GetResponse current = entry.getValue();
+            if ((current.getFound() || current.getDeleted()) && clockSum(current) >= clockSum(latest)) continue;
+            String target = entry.getKey();
+            try {
+                log.info("Syncing key '{}' to promoted/stale replica: {}", key, target);
+                if (latest.getDeleted()) {
+                    grpcClient.delete(target, key, latest.getVectorClockMap());
+                } else {
+                    grpcClient.put(target, key, latest.getValue(), latest.getVectorClockMap(), latest.getExpiresAt());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to re-replicate key '{}' to {}: {}", key, target, e.getMessage());
+            }
+        }
+    }
+
+    private static long clockSum(GetResponse response) {
+        return response.getVectorClockMap().values().stream().mapToLong(L -> L).sum();
     }
 
     @Getter
@@ -110,11 +248,41 @@ public class WorkerRegistry {
         private final String address;
         private final int port;
         private final long lastHeartbeat;
+        private final int virtualNodes;
+        private final LoadStats load;
 
-        public WorkerInfo(String address, int port, long lastHeartbeat) {
+        public WorkerInfo(String address, int port, long lastHeartbeat, int virtualNodes, LoadStats load) {
             this.address = address;
             this.port = port;
             this.lastHeartbeat = lastHeartbeat;
+            this.virtualNodes = virtualNodes;
+            this.load = load;
+        }
+    }
+
+    @Getter
+    public static class LoadStats {
+        private final long keyCount;
+        private final long bytesStored;
+        private final double requestRate;
+        private final double p99LatencyMs;
+        private final int storageQueueDepth;
+        private final double capacityWeight;
+
+        public LoadStats(long keyCount, long bytesStored, double requestRate, double p99LatencyMs,
+                         int storageQueueDepth, double capacityWeight) {
+            this.keyCount = keyCount;
+            this.bytesStored = bytesStored;
+            this.requestRate = requestRate;
+            this.p99LatencyMs = p99LatencyMs;
+            this.storageQueueDepth = storageQueueDepth;
+            this.capacityWeight = capacityWeight;
+        }
+
+        public static LoadStats from(WorkerLoad load) {
+            return new LoadStats(load.getKeyCount(), load.getBytesStored(), load.getRequestRate(),
+                    load.getP99LatencyMs(), load.getStorageQueueDepth(),
+                    load.getCapacityWeight() > 0 ? load.getCapacityWeight() : 1.0);
         }
     }
 }
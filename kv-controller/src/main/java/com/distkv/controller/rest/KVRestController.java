@@ -1,19 +1,54 @@
 package com.distkv.controller.rest;
 
+import com.distkv.controller.admission.AdmissionController;
+import com.distkv.controller.admission.AdmissionRejectedException;
 import com.distkv.controller.grpc.KVGrpcClientService;
 import com.distkv.controller.registry.WorkerRegistry;
+import com.distkv.grpc.ChangeEvent;
 import com.distkv.grpc.GetResponse;
 import com.distkv.grpc.PutResponse;
+import com.distkv.grpc.ScanRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/kv")
@@ -21,8 +56,23 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class KVRestController {
 
+    private static final int MAX_SCAN_LIMIT = 1000;
+    private static final long WATCH_TIMEOUT_MS = 30 * 60 * 1000; // clients resume with Last-Event-ID
+    // A client that went away is only noticed on the next write, so idle streams send a comment
+    private static final Duration WATCH_KEEPALIVE = Duration.ofSeconds(15);
+
     private final WorkerRegistry registry;
     private final KVGrpcClientService grpcClient;
+    private final ObjectMapper objectMapper;
+    private final AdmissionController admission;
+    private final ExecutorService blockingExecutor;
+    private final TaskScheduler taskScheduler;
+
+    @Value("${admission.request-timeout-ms:5000}")
+    private long defaultTimeoutMs;
+
+    @Value("${admission.max-request-timeout-ms:30000}")
+    private long maxTimeoutMs;
 
     @jakarta.annotation.PostConstruct
     public void init() {
@@ -30,8 +80,20 @@ public class KVRestController {
     }
 
     @PostMapping("/{key}")
-    public ResponseEntity<?> put(@PathVariable("key") String key, @RequestBody String value) {
+    public ResponseEntity<?> put(@PathVariable("key") String key, @RequestBody String value,
+                                 @RequestParam(value = "ttl", required = false) Long ttlSeconds,
+                                 HttpServletRequest httpRequest) {
+        Deadline deadline = requestDeadline(httpRequest);
+        try (AdmissionController.Permit permit = admission.admit("put", clientId(httpRequest))) {
+            return doPut(key, value, ttlSeconds, deadline);
+        }
+    }
+
+    private ResponseEntity<?> doPut(String key, String value, Long ttlSeconds, Deadline deadline) {
         log.info("Received PUT request for key: {}", key);
+        if (ttlSeconds != null && ttlSeconds <= 0) {
+            return ResponseEntity.badRequest().body("ttl must be a positive number of seconds");
+        }
         registry.registerKey(key);
         String[] replicas = registry.getHasher().getReplicas(key, 3);
         log.info("Chosen replicas for key {}: {}", key, java.util.Arrays.toString(replicas));
@@ -42,24 +104,32 @@ public class KVRestController {
 
         Map<String, Long> vectorClock = new HashMap<>(); 
         vectorClock.put("v1", System.currentTimeMillis());
+        // Absolute expiry so every replica expires the key at the same moment
+        long expiresAt;
+        try {
+            expiresAt = ttlSeconds != null ? Math.addExact(System.currentTimeMillis(), Math.multiplyExact(ttlSeconds, 1000)) : 0;
+        } catch (ArithmeticException e) {
+            // An overflowed expiry would be negative, which workers read as "never expires"
+            return ResponseEntity.badRequest().body("ttl is too large");
+        }
 
         List<String> syncSuccesses = new ArrayList<>();
         String asyncWorker = null;
 
         // Try primary and secondary synchronously first
         CompletableFuture<Boolean> w1 = CompletableFuture.supplyAsync(() -> {
-            try { return grpcClient.put(replicas[0], key, value, vectorClock).getSuccess(); }
+            try { return grpcClient.put(replicas[0], key, value, vectorClock, expiresAt, deadline).getSuccess(); }
             catch (Exception e) { return false; }
-        });
+        }, blockingExecutor);
         CompletableFuture<Boolean> w2 = CompletableFuture.supplyAsync(() -> {
-            try { return grpcClient.put(replicas[1], key, value, vectorClock).getSuccess(); }
+            try { return grpcClient.put(replicas[1], key, value, vectorClock, expiresAt, deadline).getSuccess(); }
             catch (Exception e) { return false; }
-        });
+        }, blockingExecutor);
 
         boolean s1 = false;
         boolean s2 = false;
-        try { s1 = w1.get(5, java.util.concurrent.TimeUnit.SECONDS); } catch (Exception ignored) {}
-        try { s2 = w2.get(5, java.util.concurrent.TimeUnit.SECONDS); } catch (Exception ignored) {}
+        try { s1 = w1.get(deadline.timeRemaining(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS); } catch (Exception ignored) {}
+        try { s2 = w2.get(deadline.timeRemaining(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS); } catch (Exception ignored) {}
 
         if (s1) syncSuccesses.add(replicas[0]);
         if (s2) syncSuccesses.add(replicas[1]);
@@ -68,7 +138,7 @@ public class KVRestController {
         if (syncSuccesses.size() < 2 && replicas.length == 3 && replicas[2] != null) {
             log.info("Primary/Secondary failed to reach quorum, fallback to tertiary: {}", replicas[2]);
             try {
-                if (grpcClient.put(replicas[2], key, value, vectorClock).getSuccess()) {
+                if (grpcClient.put(replicas[2], key, value, vectorClock, expiresAt, deadline).getSuccess()) {
                     syncSuccesses.add(replicas[2]);
                 }
             } catch (Exception e) {
@@ -77,8 +147,8 @@ public class KVRestController {
         } else if (syncSuccesses.size() >= 2 && replicas.length == 3 && replicas[2] != null) {
             // Already reached quorum, fire the 3rd one asynchronously
             asyncWorker = replicas[2];
-            CompletableFuture.runAsync(() -> {
-                try { grpcClient.replicate(replicas[2], key, value, vectorClock); }
+            runInBackground("Async replication to " + replicas[2], () -> {
+                try { grpcClient.replicate(replicas[2], key, value, vectorClock, expiresAt); }
                 catch (Exception e) { log.warn("Async replication failed for {}: {}", replicas[2], e.getMessage()); }
             });
         }
@@ -94,34 +164,52 @@ public class KVRestController {
     }
 
     @GetMapping("/{key}")
-    public ResponseEntity<?> get(@PathVariable("key") String key) {
+    public ResponseEntity<?> get(@PathVariable("key") String key, HttpServletRequest httpRequest) {
+        Deadline deadline = requestDeadline(httpRequest);
+        try (AdmissionController.Permit permit = admission.admit("get", clientId(httpRequest))) {
+            return doGet(key, deadline);
+        }
+    }
+
+    private ResponseEntity<?> doGet(String key, Deadline deadline) {
         log.info("Received GET request for key: {}", key);
         String[] replicas = registry.getHasher().getReplicas(key, 3);
-        
-        List<GetResponse> responses = new ArrayList<>();
-        Map<String, GetResponse> replicaResponses = new HashMap<>();
 
-        GetResponse quickResponse = null;
+        // Read every replica in parallel so one slow replica can't use up the others' share of the deadline
+        Map<String, CompletableFuture<GetResponse>> pending = new HashMap<>();
         for (String replica : replicas) {
             if (replica == null) continue;
+            pending.put(replica, CompletableFuture.supplyAsync(() -> grpcClient.get(replica, key, deadline), blockingExecutor));
+        }
+
+        Map<String, GetResponse> replicaResponses = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<GetResponse>> entry : pending.entrySet()) {
             try {
-                GetResponse res = grpcClient.get(replica, key);
-                replicaResponses.put(replica, res);
-                if (res.getFound()) {
-                    responses.add(res);
-                    if (quickResponse == null) quickResponse = res;
-                }
-            } catch (Exception e) {
-                log.warn("Failed to get from replica {}: {}", replica, e.getMessage());
+                replicaResponses.put(entry.getKey(),
+                        entry.getValue().get(deadline.timeRemaining(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS));
+            } catch (ExecutionException e) {
+                log.warn("Failed to get from replica {}: {}", entry.getKey(), e.getCause().getMessage());
+            } catch (TimeoutException e) {
+                log.warn("Failed to get from replica {}: deadline exceeded", entry.getKey());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
         }
 
+        // Without a quorum of answers a missing key may just be on the replicas that didn't answer
+        int quorum = Math.min(2, pending.size());
+        if (pending.isEmpty() || replicaResponses.size() < quorum) {
+            return ResponseEntity.status(deadline.isExpired() ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Failed to reach read quorum. Responses: " + replicaResponses.size());
+        }
+
         // Find latest version (Source of Truth)
         GetResponse latest = null;
         String sourceWorker = null;
 
         for (Map.Entry<String, GetResponse> entry : replicaResponses.entrySet()) {
-            if (entry.getValue().getFound()) {
+            if (entry.getValue().getFound() || entry.getValue().getDeleted()) {
                 if (latest == null || isNewer(entry.getValue(), latest)) {
                     latest = entry.getValue();
                     sourceWorker = entry.getKey();
@@ -135,14 +223,18 @@ public class KVRestController {
 
         // Read Repair: Fix stale or missing replicas in background
         GetResponse finalLatest = latest;
-        CompletableFuture.runAsync(() -> {
+        runInBackground("Read repair of " + key, () -> {
             for (String replica : replicas) {
                 if (replica == null) continue;
                 GetResponse current = replicaResponses.get(replica);
-                if (current == null || !current.getFound() || isNewer(finalLatest, current)) {
+                if (current == null || (!current.getFound() && !current.getDeleted()) || isNewer(finalLatest, current)) {
                     log.info("Read Repair: Updating stale/missing replica {} for key {}", replica, key);
                     try {
-                        grpcClient.put(replica, key, finalLatest.getValue(), finalLatest.getVectorClockMap());
+                        if (finalLatest.getDeleted()) {
+                            grpcClient.delete(replica, key, finalLatest.getVectorClockMap());
+                        } else {
+                            grpcClient.put(replica, key, finalLatest.getValue(), finalLatest.getVectorClockMap(), finalLatest.getExpiresAt());
+                        }
                     } catch (Exception e) {
                         log.warn("Read Repair failed for {}: {}", replica, e.getMessage());
                     }
@@ -150,11 +242,64 @@ public class KVRestController {
             }
         });
 
+        if (latest.getDeleted()) {
+            log.info("Key '{}' is deleted (Source: {})", key, sourceWorker);
+            return ResponseEntity.notFound().build();
+        }
+
         String result = String.format("Value: %s (Source: %s)", latest.getValue(), sourceWorker);
         log.info("Key '{}' retrieved from {}: {}", key, sourceWorker, latest.getValue());
         return ResponseEntity.ok(result);
     }
 
+    @DeleteMapping("/{key}")
+    public ResponseEntity<?> delete(@PathVariable("key") String key, HttpServletRequest httpRequest) {
+        Deadline deadline = requestDeadline(httpRequest);
+        try (AdmissionController.Permit permit = admission.admit("delete", clientId(httpRequest))) {
+            return doDelete(key, deadline);
+        }
+    }
+
+    private ResponseEntity<?> doDelete(String key, Deadline deadline) {
+        log.info("Received DELETE request for key: {}", key);
+        registry.registerKey(key);
+        String[] replicas = registry.getHasher().getReplicas(key, 3);
+
+        if (replicas.length < 2) {
+            return ResponseEntity.status(503).body("Not enough workers for quorum");
+        }
+
+        Map<String, Long> vectorClock = new HashMap<>();
+        vectorClock.put("v1", System.currentTimeMillis());
+
+        // Tombstone every replica in parallel, quorum is 2 like PUT
+        Map<String, CompletableFuture<Boolean>> pending = new HashMap<>();
+        for (String replica : replicas) {
+            if (replica == null) continue;
+            pending.put(replica, CompletableFuture.supplyAsync(() -> {
+                try { return grpcClient.delete(replica, key, vectorClock, deadline).getSuccess(); }
+                catch (Exception e) { return false; }
+            }, blockingExecutor));
+        }
+
+        List<String> successes = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Boolean>> entry : pending.entrySet()) {
+            try {
+                if (entry.getValue().get(deadline.timeRemaining(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)) {
+                    successes.add(entry.getKey());
+                }
+            } catch (Exception ignored) {}
+        }
+
+        if (successes.size() >= 2) {
+            String msg = String.format("Deleted successfully. {Replicas: %s}", successes);
+            log.info(msg);
+            return ResponseEntity.ok(msg);
+        }
+
+        return ResponseEntity.status(500).body("Failed to reach quorum. Successes: " + successes.size());
+    }
+
     private boolean isNewer(GetResponse res1, GetResponse res2) {
         // Simple timestamp comparison in "v1" for now, or sum of all clock values
         long v1 = res1.getVectorClockMap().values().stream().mapToLong(L -> L).sum();
@@ -162,15 +307,86 @@ public class KVRestController {
         return v1 > v2;
     }
 
+    // MVC only streams the body when the declared type says StreamingResponseBody, so
+    // validation errors are thrown and rendered by handleStatus below
+    @GetMapping("/scan")
+    public ResponseEntity<StreamingResponseBody> scan(@RequestParam(value = "prefix", defaultValue = "") String prefix,
+                                                      @RequestParam(value = "start", defaultValue = "") String start,
+                                                      @RequestParam(value = "end", defaultValue = "") String end,
+                                                      @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                      @RequestParam(value = "token", required = false) String token,
+                                                      HttpServletRequest httpRequest) {
+        Deadline deadline = requestDeadline(httpRequest);
+        log.info("Received SCAN request: prefix='{}', start='{}', end='{}', limit={}", prefix, start, end, limit);
+        if (limit <= 0 || limit > MAX_SCAN_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_SCAN_LIMIT);
+        }
+
+        ScanRequest.Builder request = ScanRequest.newBuilder()
+                .setPrefix(prefix)
+                .setStartKey(start)
+                .setEndKey(end)
+                .setLimit(limit);
+        if (token != null) {
+            try {
+                request.setStartAfter(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid continuation token");
+            }
+        }
+
+        // The slot is held until the response has been streamed, not just until we return. MVC
+        // calls afterCompletion however the async request ends, so the slot is also freed when
+        // the executor rejects the body or the request times out before the body runs
+        AdmissionController.Permit permit = admission.admit("scan", clientId(httpRequest));
+        WebAsyncUtils.getAsyncManager(httpRequest).registerCallableInterceptor("scan-permit", new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                permit.close();
+            }
+        });
+
+        // Entries are written as they come out of the merge instead of being collected first
+        StreamingResponseBody body = out -> {
+            try (permit; JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("entries");
+                String lastKey = grpcClient.scan(request.build(), deadline, entry -> {
+                    try {
+                        json.writeStartObject();
+                        json.writeStringField("key", entry.getKey());
+                        json.writeStringField("value", entry.getValue());
+                        json.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                json.writeEndArray();
+                json.writeStringField("nextToken", lastKey != null
+                        ? Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey.getBytes(StandardCharsets.UTF_8))
+                        : null);
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @GetMapping("/worker/{workerId}")
-    public ResponseEntity<?> getWorkerData(@PathVariable("workerId") String workerId) {
+    public ResponseEntity<?> getWorkerData(@PathVariable("workerId") String workerId, HttpServletRequest httpRequest) {
+        Deadline deadline = requestDeadline(httpRequest);
+        try (AdmissionController.Permit permit = admission.admit("worker-data", clientId(httpRequest))) {
+            return doGetWorkerData(workerId, deadline);
+        }
+    }
+
+    private ResponseEntity<?> doGetWorkerData(String workerId, Deadline deadline) {
         log.info("Received request for all data from worker: {}", workerId);
         if (!registry.getActiveWorkers().containsKey(workerId)) {
             return ResponseEntity.status(404).body("Worker not found or offline: " + workerId);
         }
 
         try {
-            Map<String, String> data = grpcClient.getAll(workerId);
+            Map<String, String> data = grpcClient.getAll(workerId, deadline);
             return ResponseEntity.ok(data);
         } catch (Exception e) {
             log.error("Failed to retrieve data from worker {}: {}", workerId, e.getMessage());
@@ -178,6 +394,137 @@ public class KVRestController {
         }
     }
 
+    @GetMapping(value = "/worker/{workerId}/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> watchWorker(@PathVariable("workerId") String workerId,
+                                                  @RequestParam(value = "after", required = false) Long after,
+                                                  @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                                  HttpServletRequest httpRequest) {
+        // Held until the stream ends: every open stream keeps a subscription on the worker
+        AdmissionController.Permit permit = admission.admitStream("watch", clientId(httpRequest));
+        long afterSequence = after != null ? after : (lastEventId != null ? lastEventId : 0);
+        log.info("Received WATCH request for worker {} after sequence {}", workerId, afterSequence);
+
+        SseEmitter emitter = new SseEmitter(WATCH_TIMEOUT_MS);
+        Context.CancellableContext subscription;
+        try {
+            subscription = subscribe(workerId, afterSequence, emitter);
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+        if (subscription == null) {
+            permit.close();
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Worker not found or offline: " + workerId);
+        }
+        ScheduledFuture<?> keepalive = taskScheduler.scheduleAtFixedRate(() -> {
+            try {
+                emitter.send(SseEmitter.event().comment("keepalive"));
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }, WATCH_KEEPALIVE);
+        Runnable end = () -> {
+            keepalive.cancel(false);
+            subscription.cancel(null);
+            permit.close();
+        };
+        emitter.onCompletion(end);
+        emitter.onTimeout(end);
+        emitter.onError(t -> end.run());
+        return ResponseEntity.ok(emitter);
+    }
+
+    private Context.CancellableContext subscribe(String workerId, long afterSequence, SseEmitter emitter) {
+        return grpcClient.watch(workerId, afterSequence, new StreamObserver<>() {
+            @Override
+            public void onNext(ChangeEvent event) {
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("sequence", event.getSequence());
+                data.put("type", event.getType().name());
+                data.put("key", event.getKey());
+                if (event.getType() == com.distkv.grpc.ChangeType.PUT) data.put("value", event.getValue());
+                data.put("vectorClock", event.getVectorClockMap());
+                if (event.getExpiresAt() > 0) data.put("expiresAt", event.getExpiresAt());
+                data.put("timestamp", event.getTimestamp());
+                try {
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(event.getSequence()))
+                            .name(event.getType().name())
+                            .data(data, MediaType.APPLICATION_JSON));
+                } catch (IOException e) {
+                    // Client went away, the emitter's completion handlers cancel the gRPC stream
+                    emitter.completeWithError(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                Status status = Status.fromThrowable(t);
+                if (status.getCode() == Status.Code.CANCELLED) return;
+                log.warn("Watch on worker {} failed: {}", workerId, status);
+                try {
+                    emitter.send(SseEmitter.event().name("error").data(status.getCode() + ": " + status.getDescription()));
+                } catch (IOException ignored) {
+                }
+                emitter.complete();
+            }
+
+            @Override
+            public void onCompleted() {
+                emitter.complete();
+            }
+        });
+    }
+
+    // Best effort work: when the executor is saturated it is dropped rather than queued without bound.
+    // Read repair or re-replication will catch the replica up later.
+    private void runInBackground(String description, Runnable task) {
+        try {
+            blockingExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("{} dropped, executor saturated", description);
+        }
+    }
+
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<?> handleStatus(ResponseStatusException e) {
+        return ResponseEntity.status(e.getStatusCode()).body(e.getReason());
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<?> handleSaturated(RejectedExecutionException e) {
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Controller overloaded, try again later");
+    }
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<?> handleRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    // Tenants identify themselves with X-Client-Id; anonymous clients are limited per address
+    private String clientId(HttpServletRequest request) {
+        String clientId = request.getHeader("X-Client-Id");
+        return clientId != null && !clientId.isBlank() ? clientId : request.getRemoteAddr();
+    }
+
+    // The deadline starts when the request arrives and is passed on to every worker call,
+    // so replicas stop working on requests the client has already given up on
+    private Deadline requestDeadline(HttpServletRequest request) {
+        long timeoutMs = defaultTimeoutMs;
+        String header = request.getHeader("X-Request-Timeout-Ms");
+        if (header != null) {
+            try {
+                timeoutMs = Math.max(1, Math.min(Long.parseLong(header), maxTimeoutMs));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return Deadline.after(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
     @GetMapping("/workers")
     public ResponseEntity<?> listWorkers() {
         return ResponseEntity.ok(registry.getActiveWorkers());
@@ -0,0 +1,381 @@
+package com.distkv.worker.changelog;
+
+import com.distkv.grpc.ChangeEvent;
+import com.distkv.grpc.ChangeType;
+import com.distkv.worker.model.KVEntry;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of committed writes, split into segment files named after the first
+ * sequence number they hold. Records are a 4-byte length followed by a serialized
+ * {@link ChangeEvent}. The oldest segments are dropped once the log exceeds its size budget.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChangeLog {
+    private static final int POLL_BATCH = 256;
+    private static final String CLEAN_SHUTDOWN_MARKER = "clean-shutdown";
+
+    @Value("${worker.changelog-dir:/tmp/kv-changelog}")
+    private String changelogDir;
+
+    @Value("${worker.changelog-max-bytes:268435456}")
+    private long maxBytes;
+
+    @Value("${worker.changelog-segment-bytes:16777216}")
+    private long segmentBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService blockingExecutor;
+    private Path dir;
+    private DataOutputStream out;
+    private long activeBytes;
+    private long totalBytes;
+    private long lastSequence;
+    private volatile boolean closing;
+
+    public static class TruncatedException extends IOException {
+        public TruncatedException(long afterSequence, long oldest) {
+            super("Change log no longer holds events after " + afterSequence + ", oldest is " + oldest);
+        }
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        dir = Files.createDirectories(Paths.get(changelogDir));
+        boolean cleanShutdown = Files.deleteIfExists(dir.resolve(CLEAN_SHUTDOWN_MARKER));
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(".log")).forEach(p -> {
+                String name = p.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(0, name.length() - 4)), p);
+            });
+        }
+        for (Path segment : segments.values()) {
+            totalBytes += Files.size(segment);
+        }
+
+        boolean existing = !segments.isEmpty();
+        if (!existing) {
+            openSegment(1);
+        } else {
+            Map.Entry<Long, Path> last = segments.lastEntry();
+            lastSequence = recover(last.getKey(), last.getValue());
+            activeBytes = Files.size(last.getValue());
+            out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(last.getValue(), StandardOpenOption.APPEND)));
+        }
+        log.info("Change log opened at {}, last sequence {}", dir, lastSequence);
+
+        if (existing && !cleanShutdown) {
+            // A write that committed just before the crash may have no event, so tell
+            // subscribers to re-read the worker, as after a snapshot restore
+            log.warn("Change log was not closed cleanly, events for the last writes may be missing");
+            append(ChangeEvent.newBuilder().setType(ChangeType.RESTORE));
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        closing = true;
+        subscriptions.forEach(Subscription::signal);
+        lock.lock();
+        try {
+            out.close();
+            Files.write(dir.resolve(CLEAN_SHUTDOWN_MARKER), new byte[0]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a write that was just committed to storage as a PUT or DELETE event. Callers
+     * hold the key's lock across the write and this call (see StorageService), so events for
+     * one key are logged in commit order.
+     */
+    public void recordWrite(KVEntry entry) {
+        ChangeEvent.Builder event = ChangeEvent.newBuilder()
+                .setType(entry.isTombstone() ? ChangeType.DELETE : ChangeType.PUT)
+                .setKey(entry.getKey())
+                .putAllVectorClock(entry.getVectorClock());
+        if (entry.getValue() != null) event.setValue(entry.getValue());
+        if (entry.getExpiresAt() != null) event.setExpiresAt(entry.getExpiresAt());
+        append(event);
+    }
+
+    public void append(ChangeEvent.Builder event) {
+        lock.lock();
+        try {
+            long sequence = lastSequence + 1;
+            byte[] record = event.setSequence(sequence)
+                    .setTimestamp(System.currentTimeMillis())
+                    .build()
+                    .toByteArray();
+            if (activeBytes > 0 && activeBytes + 4 + record.length > segmentBytes) {
+                out.close();
+                openSegment(sequence);
+            }
+            out.writeInt(record.length);
+            out.write(record);
+            out.flush();
+            activeBytes += 4 + record.length;
+            totalBytes += 4 + record.length;
+            lastSequence = sequence;
+            enforceRetention();
+        } catch (IOException e) {
+            log.error("Failed to append change event for key {}: {}", event.getKey(), e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+        subscriptions.forEach(Subscription::signal);
+    }
+
+    /**
+     * Streams events after {@code afterSequence} to a subscriber, replaying from disk and then
+     * following new appends until the call is cancelled. No thread waits on the subscriber:
+     * sending resumes when the transport becomes ready or an event is appended, and each
+     * such task returns once the subscriber has caught up or its transport is full.
+     */
+    public void watch(long afterSequence, ServerCallStreamObserver<ChangeEvent> observer) {
+        Subscription subscription = new Subscription(afterSequence, observer);
+        subscriptions.add(subscription);
+        observer.setOnCancelHandler(subscription::signal);
+        observer.setOnReadyHandler(subscription::signal);
+        subscription.signal();
+    }
+
+    // Must hold lock
+    private void openSegment(long baseSequence) throws IOException {
+        Path segment = dir.resolve(String.format("%020d.log", baseSequence));
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(segment)));
+        segments.put(baseSequence, segment);
+        activeBytes = 0;
+    }
+
+    // Must hold lock
+    private void enforceRetention() throws IOException {
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            Map.Entry<Long, Path> oldest = segments.pollFirstEntry();
+            totalBytes -= Files.size(oldest.getValue());
+            Files.deleteIfExists(oldest.getValue());
+            log.info("Dropped change log segment {}", oldest.getValue().getFileName());
+        }
+    }
+
+    /**
+     * Finds the last complete record of a segment and cuts off anything after it, which
+     * can only be a record half-written when the worker went down.
+     */
+    private long recover(long baseSequence, Path segment) throws IOException {
+        long last = baseSequence - 1;
+        long validBytes = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (true) {
+                int length = in.readInt();
+                byte[] record = new byte[length];
+                in.readFully(record);
+                last = ChangeEvent.parseFrom(record).getSequence();
+                validBytes += 4 + length;
+            }
+        } catch (EOFException | InvalidProtocolBufferException e) {
+            // end of the complete records
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            if (channel.size() > validBytes) {
+                log.warn("Truncating partial record at the end of {}", segment.getFileName());
+                totalBytes -= channel.size() - validBytes;
+                channel.truncate(validBytes);
+            }
+        }
+        return last;
+    }
+
+    private class Subscription {
+        private final Cursor cursor;
+        private final ServerCallStreamObserver<ChangeEvent> observer;
+        // Signals not yet handled; only the task that takes it from zero sends, so onNext is never called concurrently
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean finished;
+
+        Subscription(long afterSequence, ServerCallStreamObserver<ChangeEvent> observer) {
+            this.cursor = new Cursor(afterSequence);
+            this.observer = observer;
+        }
+
+        void signal() {
+            if (pending.getAndIncrement() != 0) return; // the running task sees the new signal before it exits
+            try {
+                blockingExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // pending stays above zero, so nothing sends after this
+                finish(Status.RESOURCE_EXHAUSTED.withDescription("Worker overloaded").asRuntimeException());
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!finished) send();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void send() {
+            try {
+                if (observer.isCancelled()) {
+                    finish(null);
+                    return;
+                }
+                if (closing) {
+                    finish(Status.UNAVAILABLE.withDescription("Worker shutting down").asRuntimeException());
+                    return;
+                }
+                while (observer.isReady()) {
+                    List<ChangeEvent> events = cursor.poll(POLL_BATCH);
+                    if (events.isEmpty()) return; // the next append signals again
+                    events.forEach(observer::onNext);
+                }
+            } catch (TruncatedException e) {
+                finish(Status.OUT_OF_RANGE.withDescription(e.getMessage()).asRuntimeException());
+            } catch (IOException e) {
+                finish(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+            }
+        }
+
+        private void finish(Throwable error) {
+            finished = true;
+            subscriptions.remove(this);
+            try {
+                cursor.close();
+            } catch (IOException ignored) {
+            }
+            if (error != null && !observer.isCancelled()) observer.onError(error);
+        }
+    }
+
+    private class Cursor implements Closeable {
+        private long afterSequence;
+        private long segmentBase;
+        private RandomAccessFile file;
+        private long position;
+
+        Cursor(long afterSequence) {
+            this.afterSequence = afterSequence;
+        }
+
+        List<ChangeEvent> poll(int max) throws IOException {
+            List<ChangeEvent> events = new ArrayList<>();
+            if (file == null && !openFirstSegment()) return events;
+
+            while (events.size() < max) {
+                ChangeEvent event = readNext();
+                if (event == null) {
+                    Long next = nextSegment();
+                    if (next == null) break; // caught up with the writer
+                    // The writer only rolls after the last record is flushed, so once a newer
+                    // segment exists this one is complete
+                    event = readNext();
+                    if (event == null) {
+                        if (next > afterSequence + 1) throw new TruncatedException(afterSequence, next);
+                        switchTo(next);
+                        continue;
+                    }
+                }
+                if (event.getSequence() > afterSequence) {
+                    events.add(event);
+                    afterSequence = event.getSequence();
+                }
+            }
+            return events;
+        }
+
+        private boolean openFirstSegment() throws IOException {
+            lock.lock();
+            try {
+                if (segments.isEmpty()) return false;
+                long oldest = segments.firstKey();
+                if (afterSequence == 0) {
+                    // 0 means "from the oldest retained event", whatever retention has dropped
+                    segmentBase = oldest;
+                } else {
+                    if (afterSequence + 1 < oldest) throw new TruncatedException(afterSequence, oldest);
+                    segmentBase = segments.floorKey(afterSequence + 1);
+                }
+                file = new RandomAccessFile(segments.get(segmentBase).toFile(), "r");
+                position = 0;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Long nextSegment() {
+            lock.lock();
+            try {
+                return segments.higherKey(segmentBase);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void switchTo(long base) throws IOException {
+            file.close();
+            lock.lock();
+            try {
+                Path segment = segments.get(base);
+                if (segment == null) throw new TruncatedException(afterSequence, segments.firstKey());
+                file = new RandomAccessFile(segment.toFile(), "r");
+            } finally {
+                lock.unlock();
+            }
+            segmentBase = base;
+            position = 0;
+        }
+
+        // Returns null when the next record isn't fully on disk yet
+        private ChangeEvent readNext() throws IOException {
+            long available = file.length() - position;
+            if (available < 4) return null;
+            file.seek(position);
+            int length = file.readInt();
+            if (available - 4 < length) return null;
+            byte[] record = new byte[length];
+            file.readFully(record);
+            position += 4 + length;
+            return ChangeEvent.parseFrom(record);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (file != null) file.close();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.distkv.worker.config;
+
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor for the gRPC handlers (one blocking JDBC call each), watch streams,
+ * heartbeats and snapshot restores. With spring.threads.virtual.enabled each task
+ * gets its own virtual thread and the connection pool becomes the limit. On platform
+ * threads the pool and its queue are bounded. Watch streams only take a thread while
+ * they have events to send, not for as long as they are subscribed.
+ */
+@Configuration
+@Slf4j
+public class ExecutorConfig {
+
+    // Interrupts running tasks on shutdown. The default, ExecutorService.close(), waits for
+    // them, and the heartbeat loop and watch streams never finish on their own.
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService blockingExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                            @Value("${executor.platform-threads:200}") int platformThreads,
+                                            @Value("${executor.queue-capacity:2000}") int queueCapacity) {
+        if (virtualThreads) {
+            log.info("Running blocking work on virtual threads");
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        log.info("Running blocking work on up to {} platform threads, {} queued tasks", platformThreads, queueCapacity);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(platformThreads, platformThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("blocking-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Bean
+    public GrpcServerConfigurer blockingExecutorGrpcServerConfigurer(ExecutorService blockingExecutor) {
+        return serverBuilder -> serverBuilder.executor(blockingExecutor);
+    }
+}
@@ -1,77 +1,216 @@
 package com.distkv.worker.grpc;
 
+import com.distkv.common.KeyOrder;
 import com.distkv.grpc.*;
+import com.distkv.worker.changelog.ChangeLog;
 import com.distkv.worker.model.KVEntry;
 import com.distkv.worker.repository.KVRepository;
+import com.distkv.worker.service.LoadTracker;
+import com.distkv.worker.service.StorageService;
+import com.distkv.worker.snapshot.SnapshotService;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import net.devh.boot.grpc.server.service.GrpcService;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 
 @GrpcService
 @RequiredArgsConstructor
 public class KVGrpcService extends KVServiceGrpc.KVServiceImplBase {
 
+    private static final int SCAN_PAGE_SIZE = 500;
+
     private final KVRepository repository;
+    private final StorageService storage;
+    private final LoadTracker loadTracker;
+    private final SnapshotService snapshotService;
+    private final ChangeLog changeLog;
 
     @Override
-    @Transactional
     public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
-        KVEntry entry = KVEntry.builder()
-                .key(request.getKey())
-                .value(request.getValue())
-                .vectorClock(request.getVectorClockMap())
-                .build();
-        repository.save(entry);
+        if (abandoned(responseObserver)) return;
+        long start = System.nanoTime();
+        loadTracker.writeStarted();
+        try {
+            // A superseded write still counts as a success: the replica is at least as new as the caller asked for
+            storage.store(KVEntry.builder()
+                    .key(request.getKey())
+                    .value(request.getValue())
+                    .vectorClock(request.getVectorClockMap())
+                    .expiresAt(toExpiresAt(request.getExpiresAt()))
+                    .build());
+        } finally {
+            loadTracker.writeFinished();
+        }
         
         responseObserver.onNext(PutResponse.newBuilder().setSuccess(true).build());
         responseObserver.onCompleted();
+        loadTracker.recordRequest(start);
     }
 
     @Override
     public void get(GetRequest request, StreamObserver<GetResponse> responseObserver) {
+        if (abandoned(responseObserver)) return;
+        long start = System.nanoTime();
         Optional<KVEntry> entryOpt = repository.findById(request.getKey());
         GetResponse.Builder responseBuilder = GetResponse.newBuilder();
         
-        if (entryOpt.isPresent()) {
+        // Expired entries are hidden here and removed later by ExpirationService
+        if (entryOpt.isPresent() && !entryOpt.get().isExpired(System.currentTimeMillis())) {
             KVEntry entry = entryOpt.get();
-            responseBuilder.setValue(entry.getValue())
-                    .putAllVectorClock(entry.getVectorClock())
-                    .setFound(true);
+            responseBuilder.putAllVectorClock(entry.getVectorClock());
+            if (entry.isTombstone()) {
+                responseBuilder.setFound(false).setDeleted(true);
+            } else {
+                responseBuilder.setValue(entry.getValue())
+                        .setExpiresAt(entry.getExpiresAt() != null ? entry.getExpiresAt() : 0)
+                        .setFound(true);
+            }
         } else {
             responseBuilder.setFound(false);
         }
         
         responseObserver.onNext(responseBuilder.build());
         responseObserver.onCompleted();
+        loadTracker.recordRequest(start);
     }
 
     @Override
-    @Transactional
     public void replicate(ReplicateRequest request, StreamObserver<ReplicateResponse> responseObserver) {
-        KVEntry entry = KVEntry.builder()
-                .key(request.getKey())
-                .value(request.getValue())
-                .vectorClock(request.getVectorClockMap())
-                .build();
-        repository.save(entry);
+        if (abandoned(responseObserver)) return;
+        long start = System.nanoTime();
+        loadTracker.writeStarted();
+        try {
+            storage.store(KVEntry.builder()
+                    .key(request.getKey())
+                    .value(request.getValue())
+                    .vectorClock(request.getVectorClockMap())
+                    .expiresAt(toExpiresAt(request.getExpiresAt()))
+                    .build());
+        } finally {
+            loadTracker.writeFinished();
+        }
         
         responseObserver.onNext(ReplicateResponse.newBuilder().setSuccess(true).build());
         responseObserver.onCompleted();
+        loadTracker.recordRequest(start);
+    }
+
+    @Override
+    public void delete(DeleteRequest request, StreamObserver<DeleteResponse> responseObserver) {
+        if (abandoned(responseObserver)) return;
+        long start = System.nanoTime();
+        loadTracker.writeStarted();
+        try {
+            // Keep a tombstone so replicas holding an older value don't bring the key back
+            storage.store(KVEntry.builder()
+                    .key(request.getKey())
+                    .vectorClock(request.getVectorClockMap())
+                    .deletedAt(System.currentTimeMillis())
+                    .build());
+        } finally {
+            loadTracker.writeFinished();
+        }
+
+        responseObserver.onNext(DeleteResponse.newBuilder().setSuccess(true).build());
+        responseObserver.onCompleted();
+        loadTracker.recordRequest(start);
     }
 
     @Override
     public void sync(SyncRequest request, StreamObserver<SyncEntry> responseObserver) {
         // Simple full sync for now, can be optimized with vector clock comparison
+        long now = System.currentTimeMillis();
         repository.findAll().forEach(entry -> {
-            responseObserver.onNext(SyncEntry.newBuilder()
+            if (entry.isExpired(now)) return;
+            SyncEntry.Builder syncEntry = SyncEntry.newBuilder()
                     .setKey(entry.getKey())
-                    .setValue(entry.getValue())
                     .putAllVectorClock(entry.getVectorClock())
-                    .build());
+                    .setDeleted(entry.isTombstone());
+            if (entry.getValue() != null) syncEntry.setValue(entry.getValue());
+            if (entry.getExpiresAt() != null) syncEntry.setExpiresAt(entry.getExpiresAt());
+            if (entry.getDeletedAt() != null) syncEntry.setDeletedAt(entry.getDeletedAt());
+            responseObserver.onNext(syncEntry.build());
         });
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void scan(ScanRequest request, StreamObserver<ScanEntry> responseObserver) {
+        if (abandoned(responseObserver)) return;
+        long startNanos = System.nanoTime();
+        String prefix = request.getPrefix();
+        // Keys sharing a prefix are contiguous, so a prefix scan starts at the prefix
+        // and stops at the first key that doesn't match
+        String start = KeyOrder.compare(prefix, request.getStartKey()) > 0 ? prefix : request.getStartKey();
+        String after = request.getStartAfter();
+        int limit = request.getLimit() > 0 ? request.getLimit() : Integer.MAX_VALUE;
+        long now = System.currentTimeMillis();
+
+        int sent = 0;
+        scan:
+        while (sent < limit) {
+            // The controller cancels the remaining streams once its page is full or its deadline passes
+            if (abandoned(responseObserver)) return;
+            int pageSize = Math.min(SCAN_PAGE_SIZE, limit - sent);
+            List<KVEntry> page = request.getEndKey().isEmpty()
+                    ? repository.scanFrom(start, after, now, pageSize)
+                    : repository.scanRange(start, after, request.getEndKey(), now, pageSize);
+            for (KVEntry entry : page) {
+                if (!entry.getKey().startsWith(prefix)) break scan;
+                ScanEntry.Builder scanEntry = ScanEntry.newBuilder()
+                        .setKey(entry.getKey())
+                        .putAllVectorClock(entry.getVectorClock())
+                        .setDeleted(entry.isTombstone());
+                if (entry.getValue() != null) scanEntry.setValue(entry.getValue());
+                responseObserver.onNext(scanEntry.build());
+                after = entry.getKey();
+                sent++;
+            }
+            if (page.size() < pageSize) break;
+        }
+        responseObserver.onCompleted();
+        loadTracker.recordRequest(startNanos);
+    }
+
+    @Override
+    public void fetchSnapshot(SnapshotRequest request, StreamObserver<SnapshotChunk> responseObserver) {
+        try {
+            Path snapshot = snapshotService.createSnapshot();
+            snapshotService.stream(snapshot, (ServerCallStreamObserver<SnapshotChunk>) responseObserver);
+        } catch (IOException e) {
+            responseObserver.onError(Status.INTERNAL
+                    .withDescription("Snapshot for " + request.getWorkerId() + " failed: " + e.getMessage())
+                    .asRuntimeException());
+        }
+    }
+
+    @Override
+    public void watch(WatchRequest request, StreamObserver<ChangeEvent> responseObserver) {
+        changeLog.watch(request.getAfterSequence(), (ServerCallStreamObserver<ChangeEvent>) responseObserver);
+    }
+
+    /**
+     * Requests can sit in the executor queue past their deadline when the worker is
+     * overloaded; the caller has already given up on those, so skip the storage work.
+     */
+    private static boolean abandoned(StreamObserver<?> responseObserver) {
+        Context context = Context.current();
+        if (!context.isCancelled()) return false;
+        Deadline deadline = context.getDeadline();
+        Status status = deadline != null && deadline.isExpired() ? Status.DEADLINE_EXCEEDED : Status.CANCELLED;
+        responseObserver.onError(status.withDescription("Request abandoned by caller").asRuntimeException());
+        return true;
+    }
+
+    private static Long toExpiresAt(long expiresAt) {
+        return expiresAt > 0 ? expiresAt : null;
+    }
 }
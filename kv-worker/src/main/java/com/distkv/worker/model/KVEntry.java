@@ -11,7 +11,10 @@ import org.hibernate.annotations.Type;
 import java.util.Map;
 
 @Entity
-@Table(name = "kv_store")
+@Table(name = "kv_store", indexes = {
+        @Index(name = "idx_kv_store_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_kv_store_deleted_at", columnList = "deleted_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -26,4 +29,20 @@ public class KVEntry {
     @Type(JsonBinaryType.class)
     @Column(columnDefinition = "jsonb")
     private Map<String, Long> vectorClock;
+
+    // Epoch millis after which the entry is treated as absent, null = never
+    @Column(name = "expires_at")
+    private Long expiresAt;
+
+    // Set when the entry is a tombstone, used to garbage collect it later
+    @Column(name = "deleted_at")
+    private Long deletedAt;
+
+    public boolean isTombstone() {
+        return deletedAt != null;
+    }
+
+    public boolean isExpired(long now) {
+        return expiresAt != null && expiresAt <= now;
+    }
 }
@@ -2,8 +2,40 @@ package com.distkv.worker.repository;
 
 import com.distkv.worker.model.KVEntry;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 @Repository
 public interface KVRepository extends JpaRepository<KVEntry, String> {
+
+    // Planner statistics rather than count(*) and a byte sum, which both scan the whole table.
+    // reltuples is -1 until the table is first vacuumed or analyzed.
+    @Query(value = "SELECT CAST(GREATEST(reltuples, 0) AS bigint) FROM pg_class WHERE oid = to_regclass('kv_store')", nativeQuery = true)
+    long estimateKeyCount();
+
+    @Query(value = "SELECT pg_total_relation_size('kv_store')", nativeQuery = true)
+    long totalRelationBytes();
+
+    // Keyset pages over idx_kv_store_key_c (see schema.sql); tombstones are included so
+    // the controller can resolve them against stale replicas
+    @Query(value = "SELECT * FROM kv_store WHERE key COLLATE \"C\" >= :start AND key COLLATE \"C\" > :after "
+            + "AND (expires_at IS NULL OR expires_at > :now) ORDER BY key COLLATE \"C\" LIMIT :limit", nativeQuery = true)
+    List<KVEntry> scanFrom(@Param("start") String start, @Param("after") String after,
+                           @Param("now") long now, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM kv_store WHERE key COLLATE \"C\" >= :start AND key COLLATE \"C\" > :after "
+            + "AND key COLLATE \"C\" < :end AND (expires_at IS NULL OR expires_at > :now) "
+            + "ORDER BY key COLLATE \"C\" LIMIT :limit", nativeQuery = true)
+    List<KVEntry> scanRange(@Param("start") String start, @Param("after") String after, @Param("end") String end,
+                            @Param("now") long now, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM kv_store WHERE key IN (SELECT key FROM kv_store WHERE deleted_at <= :cutoff ORDER BY deleted_at LIMIT :limit)", nativeQuery = true)
+    int purgeTombstones(@Param("cutoff") long cutoff, @Param("limit") int limit);
 }
@@ -0,0 +1,94 @@
+package com.distkv.worker.repository;
+
+import com.distkv.worker.model.KVEntry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Every write path (client puts, replication, deletes, sync and snapshot restore) goes
+ * through this upsert, so an older version can never overwrite a newer one or a tombstone,
+ * whatever order the replicas' messages arrive in.
+ */
+@Repository
+@RequiredArgsConstructor
+public class KVStoreWriter {
+
+    // Only overwrite a row if the incoming version is newer
+    private static final String UPSERT_SQL =
+            "INSERT INTO kv_store (key, value, vector_clock, expires_at, deleted_at) VALUES (?, ?, CAST(? AS jsonb), ?, ?) "
+            + "ON CONFLICT (key) DO UPDATE SET value = EXCLUDED.value, vector_clock = EXCLUDED.vector_clock, "
+            + "expires_at = EXCLUDED.expires_at, deleted_at = EXCLUDED.deleted_at "
+            + "WHERE (SELECT COALESCE(SUM(c.value::bigint), 0) FROM jsonb_each_text(kv_store.vector_clock) c) "
+            + "< (SELECT COALESCE(SUM(c.value::bigint), 0) FROM jsonb_each_text(EXCLUDED.vector_clock) c)";
+
+    // Walks idx_kv_store_expires_at in expiry order, so each batch only touches due rows
+    private static final String FIND_EXPIRED_SQL =
+            "SELECT key FROM kv_store WHERE expires_at <= ? ORDER BY expires_at LIMIT ?";
+
+    // Re-checks the expiry, the row may have been rewritten since it was found. The tombstone
+    // keeps the expired write's clock, so a replica that missed that write and still holds an
+    // older value can't copy it back. Clearing expires_at keeps tombstones out of the index above.
+    private static final String TOMBSTONE_EXPIRED_SQL =
+            "UPDATE kv_store SET value = NULL, deleted_at = expires_at, expires_at = NULL "
+            + "WHERE key = ANY(?) AND expires_at <= ? RETURNING key";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Returns true if the entry was stored, false if the row already held the same or a newer version.
+     */
+    public boolean upsert(KVEntry entry) {
+        return jdbcTemplate.update(UPSERT_SQL, ps -> bind(ps, entry)) > 0;
+    }
+
+    public void upsertAll(List<KVEntry> entries) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, entries, entries.size(), this::bind);
+    }
+
+    /**
+     * Returns the keys of up to {@code limit} entries that expired at or before {@code now}.
+     */
+    public List<String> findExpired(long now, int limit) {
+        return jdbcTemplate.queryForList(FIND_EXPIRED_SQL, String.class, now, limit);
+    }
+
+    /**
+     * Turns those of {@code keys} that are still expired into tombstones and returns their keys.
+     */
+    public List<String> tombstoneExpired(List<String> keys, long now) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(TOMBSTONE_EXPIRED_SQL);
+            ps.setArray(1, con.createArrayOf("text", keys.toArray()));
+            ps.setLong(2, now);
+            return ps;
+        }, (rs, rowNum) -> rs.getString(1));
+    }
+
+    private void bind(PreparedStatement ps, KVEntry entry) throws SQLException {
+        ps.setString(1, entry.getKey());
+        ps.setString(2, entry.getValue());
+        ps.setString(3, toJson(entry));
+        if (entry.getExpiresAt() != null) ps.setLong(4, entry.getExpiresAt());
+        else ps.setNull(4, Types.BIGINT);
+        if (entry.getDeletedAt() != null) ps.setLong(5, entry.getDeletedAt());
+        else ps.setNull(5, Types.BIGINT);
+    }
+
+    private String toJson(KVEntry entry) {
+        try {
+            return objectMapper.writeValueAsString(entry.getVectorClock());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.distkv.worker.service;
+
+import com.distkv.worker.repository.KVRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Turns expired keys into tombstones and removes old tombstones in small batches. Reads
+ * already hide expired entries, so this only has to keep up with the storage, not the clock.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExpirationService {
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_BATCHES_PER_RUN = 50;
+
+    private final KVRepository repository;
+    private final StorageService storage;
+
+    // Tombstones must outlive any replica that could still resurrect the key
+    // through read repair, re-replication or sync
+    @Value("${worker.tombstone-grace-seconds:86400}")
+    private long tombstoneGraceSeconds;
+
+    @Scheduled(fixedDelay = 1000)
+    public void expireKeys() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            int due = storage.expire(now, BATCH_SIZE);
+            removed += due;
+            if (due < BATCH_SIZE) break;
+        }
+        if (removed > 0) {
+            log.debug("Expired {} keys", removed);
+        }
+    }
+
+    // No change events: the key was already reported as deleted when the tombstone was written
+    @Scheduled(fixedDelay = 60000)
+    public void purgeTombstones() {
+        long cutoff = System.currentTimeMillis() - tombstoneGraceSeconds * 1000;
+        int removed = 0;
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            int batch = repository.purgeTombstones(cutoff, BATCH_SIZE);
+            removed += batch;
+            if (batch < BATCH_SIZE) break;
+        }
+        if (removed > 0) {
+            log.info("Purged {} tombstones older than {}s", removed, tombstoneGraceSeconds);
+        }
+    }
+}
@@ -4,7 +4,7 @@ import com.distkv.grpc.HealthServiceGrpc;
 import com.distkv.grpc.HeartbeatRequest;
 import com.distkv.grpc.HeartbeatResponse;
 import com.distkv.grpc.KVServiceGrpc;
-import com.distkv.worker.repository.KVRepository;
+import com.distkv.worker.snapshot.SnapshotService;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.stub.StreamObserver;
@@ -14,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -21,7 +22,16 @@ import java.util.concurrent.TimeUnit;
 public class HeartbeatClient {
 
     @Autowired
-    private KVRepository repository;
+    private StorageService storage;
+
+    @Autowired
+    private LoadTracker loadTracker;
+
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private ExecutorService blockingExecutor;
 
     @Value("${controller.host:kv-controller}")
     private String controllerHost;
@@ -59,6 +69,19 @@ public class HeartbeatClient {
             }
 
             private void triggerSync(String host, int port) {
+                log.info("Triggering snapshot restore from {}:{}", host, port);
+                blockingExecutor.execute(() -> {
+                    try {
+                        long loaded = snapshotService.restoreFrom(host, port);
+                        log.info("Snapshot restore completed, {} entries", loaded);
+                    } catch (Exception e) {
+                        log.warn("Snapshot restore from {}:{} failed, falling back to entry sync: {}", host, port, e.getMessage());
+                        syncEntries(host, port);
+                    }
+                });
+            }
+
+            private void syncEntries(String host, int port) {
                 log.info("Triggering sync from {}:{}", host, port);
                 ManagedChannel channel = ManagedChannelBuilder.forAddress(host, port)
                         .usePlaintext()
@@ -67,11 +90,20 @@ public class HeartbeatClient {
                 stub.sync(com.distkv.grpc.SyncRequest.newBuilder().setWorkerId(workerId).build(), new StreamObserver<>() {
                     @Override
                     public void onNext(com.distkv.grpc.SyncEntry value) {
-                        repository.save(com.distkv.worker.model.KVEntry.builder()
+                        // Keep the peer's deletion time so syncing doesn't restart the tombstone's
+                        // grace period; peers that don't send one fall back to now
+                        Long deletedAt = null;
+                        if (value.getDeleted()) {
+                            deletedAt = value.getDeletedAt() > 0 ? value.getDeletedAt() : System.currentTimeMillis();
+                        }
+                        com.distkv.worker.model.KVEntry entry = com.distkv.worker.model.KVEntry.builder()
                                 .key(value.getKey())
-                                .value(value.getValue())
+                                .value(value.getDeleted() ? null : value.getValue())
                                 .vectorClock(value.getVectorClockMap())
-                                .build());
+                                .expiresAt(value.getExpiresAt() > 0 ? value.getExpiresAt() : null)
+                                .deletedAt(deletedAt)
+                                .build();
+                        storage.store(entry);
                     }
 
                     @Override
@@ -107,19 +139,20 @@ public class HeartbeatClient {
 
         StreamObserver<HeartbeatRequest> requestObserver = asyncStub.heartbeat(responseObserver);
         
-        new Thread(() -> {
+        blockingExecutor.execute(() -> {
             while (true) {
                 try {
                     requestObserver.onNext(HeartbeatRequest.newBuilder()
                             .setWorkerId(workerId)
                             .setAddress(workerAddress)
                             .setPort(workerPort)
+                            .setLoad(loadTracker.snapshot())
                             .build());
                     TimeUnit.SECONDS.sleep(2);
                 } catch (Exception e) {
                     break;
                 }
             }
-        }).start();
+        });
     }
 }
@@ -0,0 +1,120 @@
+package com.distkv.worker.service;
+
+import com.distkv.grpc.WorkerLoad;
+import com.distkv.worker.repository.KVRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the load statistics a worker reports to the controller with every heartbeat.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LoadTracker {
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private final KVRepository repository;
+
+    @Value("${worker.capacity-weight:1.0}")
+    private double capacityWeight;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final ReentrantLock latencyLock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCursor = 0;
+    private int latencyFill = 0;
+
+    private long lastRequestCount = 0;
+    private long lastSnapshotAt = System.currentTimeMillis();
+
+    // Refreshed off the heartbeat thread, so a slow query can't delay heartbeats past the controller's timeout
+    private volatile long keyCount = 0;
+    private volatile long bytesStored = 0;
+
+    public void writeStarted() {
+        pendingWrites.incrementAndGet();
+    }
+
+    public void writeFinished() {
+        pendingWrites.decrementAndGet();
+    }
+
+    public void recordRequest(long startNanos) {
+        requestCount.incrementAndGet();
+        long elapsed = System.nanoTime() - startNanos;
+        latencyLock.lock();
+        try {
+            latencies[latencyCursor] = elapsed;
+            latencyCursor = (latencyCursor + 1) % LATENCY_SAMPLES;
+            if (latencyFill < LATENCY_SAMPLES) latencyFill++;
+        } finally {
+            latencyLock.unlock();
+        }
+    }
+
+    public WorkerLoad snapshot() {
+        snapshotLock.lock();
+        try {
+            return buildSnapshot();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private WorkerLoad buildSnapshot() {
+        long now = System.currentTimeMillis();
+        long count = requestCount.get();
+        double seconds = Math.max(now - lastSnapshotAt, 1) / 1000.0;
+        double rate = (count - lastRequestCount) / seconds;
+        lastRequestCount = count;
+        lastSnapshotAt = now;
+
+        return WorkerLoad.newBuilder()
+                .setKeyCount(keyCount)
+                .setBytesStored(bytesStored)
+                .setRequestRate(rate)
+                .setP99LatencyMs(p99LatencyMs())
+                .setStorageQueueDepth(pendingWrites.get())
+                .setCapacityWeight(capacityWeight)
+                .build();
+    }
+
+    /**
+     * Key count and size on disk (including indexes and TOAST) from Postgres' statistics,
+     * which are approximate but cost no table scan.
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void refreshStorageStats() {
+        try {
+            keyCount = repository.estimateKeyCount();
+            bytesStored = repository.totalRelationBytes();
+        } catch (Exception e) {
+            log.warn("Failed to refresh storage stats: {}", e.getMessage());
+        }
+    }
+
+    private double p99LatencyMs() {
+        long[] samples;
+        latencyLock.lock();
+        try {
+            samples = Arrays.copyOf(latencies, latencyFill);
+        } finally {
+            latencyLock.unlock();
+        }
+        if (samples.length == 0) return 0;
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(samples.length * 0.99) - 1;
+        return samples[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,77 @@
+package com.distkv.worker.service;
+
+import com.distkv.grpc.ChangeEvent;
+import com.distkv.grpc.ChangeType;
+import com.distkv.worker.changelog.ChangeLog;
+import com.distkv.worker.model.KVEntry;
+import com.distkv.worker.repository.KVStoreWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies single-key writes and records them in the change log. Each write is one
+ * autocommitted statement, and a per-key striped lock is held from the statement until its
+ * event is appended, so two writes to the same key are logged in the order they committed.
+ */
+@Service
+@RequiredArgsConstructor
+public class StorageService {
+    private static final int LOCK_STRIPES = 256;
+
+    private final KVStoreWriter writer;
+    private final ChangeLog changeLog;
+    // ReentrantLock rather than synchronized: the lock is held across a JDBC call, which would pin a virtual thread
+    private final ReentrantLock[] stripes = newStripes();
+
+    /**
+     * Writes the entry unless storage already holds the same or a newer version, e.g. a
+     * late replicate of a value that has since been deleted. Returns true if it was written.
+     */
+    public boolean store(KVEntry entry) {
+        ReentrantLock lock = stripes[stripe(entry.getKey())];
+        lock.lock();
+        try {
+            if (!writer.upsert(entry)) return false;
+            changeLog.recordWrite(entry);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Turns up to {@code limit} entries whose TTL has passed into tombstones, dated at their
+     * expiry, and logs an EXPIRE event for each. Returns the number of due entries found, so
+     * the caller knows whether to go on.
+     */
+    public int expire(long now, int limit) {
+        List<String> due = writer.findExpired(now, limit);
+        if (due.isEmpty()) return 0;
+
+        // Locked in stripe order, so two callers can never wait on each other
+        int[] locked = due.stream().mapToInt(StorageService::stripe).distinct().sorted().toArray();
+        for (int stripe : locked) stripes[stripe].lock();
+        try {
+            // A key rewritten since it was found no longer matches and is left alone
+            for (String key : writer.tombstoneExpired(due, now)) {
+                changeLog.append(ChangeEvent.newBuilder().setType(ChangeType.EXPIRE).setKey(key));
+            }
+        } finally {
+            for (int i = locked.length - 1; i >= 0; i--) stripes[locked[i]].unlock();
+        }
+        return due.size();
+    }
+
+    private static int stripe(String key) {
+        return Math.floorMod(key.hashCode(), LOCK_STRIPES);
+    }
+
+    private static ReentrantLock[] newStripes() {
+        ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new ReentrantLock();
+        return locks;
+    }
+}
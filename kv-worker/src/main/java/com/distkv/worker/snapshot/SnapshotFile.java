@@ -0,0 +1,210 @@
+package com.distkv.worker.snapshot;
+
+import com.distkv.worker.model.KVEntry;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshot file layout:
+ * <pre>
+ *   header : magic(int) version(int) createdAt(long)
+ *   blocks : length(int) crc32(long) gzip(entries)       repeated, entries in key order
+ *   index  : blockCount(int) { firstKey offset(long) entryCount(int) }
+ *   footer : indexOffset(long) totalEntries(long) magic(int)
+ * </pre>
+ */
+public final class SnapshotFile {
+    static final int MAGIC = 0x4B56534E; // "KVSN"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int FOOTER_SIZE = 20;
+    static final int BLOCK_ENTRIES = 1000;
+
+    private SnapshotFile() {
+    }
+
+    public interface BlockConsumer {
+        void accept(List<KVEntry> entries) throws IOException;
+    }
+
+    public record BlockRef(String firstKey, long offset, int entryCount) {
+    }
+
+    public static class Writer implements Closeable {
+        private final FileOutputStream file;
+        private final DataOutputStream out;
+        private final List<BlockRef> index = new ArrayList<>();
+        private final List<KVEntry> block = new ArrayList<>();
+        private long position;
+        private long totalEntries;
+
+        public Writer(Path path) throws IOException {
+            this.file = new FileOutputStream(path.toFile());
+            this.out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            position = HEADER_SIZE;
+        }
+
+        /** Entries must be added in ascending key order. */
+        public void add(KVEntry entry) throws IOException {
+            block.add(entry);
+            if (block.size() == BLOCK_ENTRIES) flushBlock();
+        }
+
+        public long finish() throws IOException {
+            flushBlock();
+            long indexOffset = position;
+            out.writeInt(index.size());
+            for (BlockRef ref : index) {
+                writeString(out, ref.firstKey());
+                out.writeLong(ref.offset());
+                out.writeInt(ref.entryCount());
+            }
+            out.writeLong(indexOffset);
+            out.writeLong(totalEntries);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getFD().sync();
+            return totalEntries;
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.isEmpty()) return;
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (DataOutputStream blockOut = new DataOutputStream(new GZIPOutputStream(buffer))) {
+                for (KVEntry entry : block) {
+                    writeEntry(blockOut, entry);
+                }
+            }
+            byte[] compressed = buffer.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(compressed);
+
+            index.add(new BlockRef(block.get(0).getKey(), position, block.size()));
+            out.writeInt(compressed.length);
+            out.writeLong(crc.getValue());
+            out.write(compressed);
+            position += 12 + compressed.length;
+            totalEntries += block.size();
+            block.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads every block listed in the index, verifying its checksum, and hands the
+     * decoded entries to {@code consumer} one block at a time. Returns the entry count.
+     */
+    public static long read(Path path, BlockConsumer consumer) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            if (file.length() < HEADER_SIZE + FOOTER_SIZE || file.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file: " + path);
+            }
+            if (file.readInt() != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + path);
+            }
+
+            file.seek(file.length() - FOOTER_SIZE);
+            long indexOffset = file.readLong();
+            long totalEntries = file.readLong();
+            if (file.readInt() != MAGIC) {
+                throw new IOException("Truncated snapshot file: " + path);
+            }
+
+            List<BlockRef> index = new ArrayList<>();
+            file.seek(indexOffset);
+            int blockCount = file.readInt();
+            for (int i = 0; i < blockCount; i++) {
+                index.add(new BlockRef(readString(file), file.readLong(), file.readInt()));
+            }
+
+            long loaded = 0;
+            for (BlockRef ref : index) {
+                file.seek(ref.offset());
+                byte[] compressed = new byte[file.readInt()];
+                long expectedCrc = file.readLong();
+                file.readFully(compressed);
+                CRC32 crc = new CRC32();
+                crc.update(compressed);
+                if (crc.getValue() != expectedCrc) {
+                    throw new IOException("Checksum mismatch in block at offset " + ref.offset() + " of " + path);
+                }
+
+                List<KVEntry> entries = new ArrayList<>(ref.entryCount());
+                try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed)))) {
+                    for (int i = 0; i < ref.entryCount(); i++) {
+                        entries.add(readEntry(in));
+                    }
+                }
+                consumer.accept(entries);
+                loaded += entries.size();
+            }
+
+            if (loaded != totalEntries) {
+                throw new IOException("Expected " + totalEntries + " entries but read " + loaded + " from " + path);
+            }
+            return loaded;
+        }
+    }
+
+    private static void writeEntry(DataOutput out, KVEntry entry) throws IOException {
+        writeString(out, entry.getKey());
+        out.writeBoolean(entry.getValue() != null);
+        if (entry.getValue() != null) writeString(out, entry.getValue());
+        Map<String, Long> clock = entry.getVectorClock() != null ? entry.getVectorClock() : Map.of();
+        out.writeInt(clock.size());
+        for (Map.Entry<String, Long> tick : clock.entrySet()) {
+            writeString(out, tick.getKey());
+            out.writeLong(tick.getValue());
+        }
+        out.writeLong(entry.getExpiresAt() != null ? entry.getExpiresAt() : 0);
+        out.writeLong(entry.getDeletedAt() != null ? entry.getDeletedAt() : 0);
+    }
+
+    private static KVEntry readEntry(DataInput in) throws IOException {
+        String key = readString(in);
+        String value = in.readBoolean() ? readString(in) : null;
+        int clockSize = in.readInt();
+        Map<String, Long> clock = new HashMap<>();
+        for (int i = 0; i < clockSize; i++) {
+            clock.put(readString(in), in.readLong());
+        }
+        long expiresAt = in.readLong();
+        long deletedAt = in.readLong();
+        return KVEntry.builder()
+                .key(key)
+                .value(value)
+                .vectorClock(clock)
+                .expiresAt(expiresAt > 0 ? expiresAt : null)
+                .deletedAt(deletedAt > 0 ? deletedAt : null)
+                .build();
+    }
+
+    // Length-prefixed rather than writeUTF, which caps strings at 64KB
+    private static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,285 @@
+package com.distkv.worker.snapshot;
+
+import com.distkv.grpc.ChangeEvent;
+import com.distkv.grpc.ChangeType;
+import com.distkv.grpc.KVServiceGrpc;
+import com.distkv.grpc.SnapshotChunk;
+import com.distkv.grpc.SnapshotRequest;
+import com.distkv.worker.changelog.ChangeLog;
+import com.distkv.worker.model.KVEntry;
+import com.distkv.worker.repository.KVStoreWriter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SnapshotService {
+    private static final int FETCH_SIZE = 1000;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int SNAPSHOTS_TO_KEEP = 2;
+    private static final TypeReference<Map<String, Long>> CLOCK_TYPE = new TypeReference<>() {
+    };
+
+    // Ordered by idx_kv_store_key_c (see schema.sql), the order SnapshotFile expects
+    private static final String SNAPSHOT_SQL =
+            "SELECT key, value, vector_clock, expires_at, deleted_at FROM kv_store "
+            + "WHERE expires_at IS NULL OR expires_at > ? ORDER BY key COLLATE \"C\"";
+
+    private final KVStoreWriter writer;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final TaskScheduler taskScheduler;
+    private final ChangeLog changeLog;
+    // Snapshots handed to stream() but not yet fully sent
+    private final Set<Path> serving = ConcurrentHashMap.newKeySet();
+
+    @Value("${worker.snapshot-dir:/tmp/kv-snapshots}")
+    private String snapshotDir;
+
+    // The peer builds its snapshot before the first chunk, so this also bounds that
+    @Value("${worker.snapshot-idle-timeout-seconds:300}")
+    private long idleTimeoutSeconds;
+
+    @Value("${worker.snapshot-restore-timeout-seconds:3600}")
+    private long restoreTimeoutSeconds;
+
+    @Value("${worker.id}")
+    private String workerId;
+
+    /**
+     * Writes every live entry and tombstone to a new snapshot file. The whole scan runs
+     * in one REPEATABLE READ transaction, so the file reflects a single point in time.
+     * Rows are streamed through a server-side cursor rather than loaded as entities, which
+     * would all stay in the persistence context until the transaction ends.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Path createSnapshot() throws IOException {
+        Path dir = Files.createDirectories(Paths.get(snapshotDir));
+        Path target = dir.resolve("snapshot-" + workerId + "-" + System.currentTimeMillis() + ".kvs");
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+
+        long now = System.currentTimeMillis();
+        long entries;
+        try (SnapshotFile.Writer snapshotWriter = new SnapshotFile.Writer(tmp)) {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(SNAPSHOT_SQL);
+                ps.setFetchSize(FETCH_SIZE);
+                ps.setLong(1, now);
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    snapshotWriter.add(toEntry(rs));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            entries = snapshotWriter.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Created snapshot {} with {} entries ({} bytes)", target, entries, Files.size(target));
+
+        // Claimed before pruning so a concurrent snapshot can't delete it before it is streamed
+        serving.add(target);
+        pruneSnapshots(dir);
+        return target;
+    }
+
+    /**
+     * Streams a snapshot file in chunks, only sending while the transport can take more
+     * so a large file is never buffered in memory.
+     */
+    public void stream(Path snapshot, ServerCallStreamObserver<SnapshotChunk> observer) throws IOException {
+        InputStream in;
+        try {
+            in = Files.newInputStream(snapshot);
+        } catch (IOException e) {
+            serving.remove(snapshot);
+            throw e;
+        }
+        observer.setOnCancelHandler(() -> release(snapshot, in));
+        observer.setOnReadyHandler(new Runnable() {
+            private long offset = 0;
+            private boolean done = false;
+
+            @Override
+            public void run() {
+                try {
+                    while (!done && observer.isReady()) {
+                        byte[] data = in.readNBytes(CHUNK_SIZE);
+                        if (data.length == 0) {
+                            done = true;
+                            release(snapshot, in);
+                            observer.onCompleted();
+                            return;
+                        }
+                        observer.onNext(SnapshotChunk.newBuilder()
+                                .setOffset(offset)
+                                .setData(ByteString.copyFrom(data))
+                                .build());
+                        offset += data.length;
+                    }
+                } catch (IOException e) {
+                    done = true;
+                    release(snapshot, in);
+                    observer.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Downloads a fresh snapshot from a peer and bulk loads it. Returns the number of entries loaded.
+     * The download is bounded by an overall deadline and fails early if the peer stops sending,
+     * so the caller can fall back to entry sync instead of waiting forever.
+     */
+    public long restoreFrom(String host, int port) throws IOException {
+        Path dir = Files.createDirectories(Paths.get(snapshotDir));
+        Path target = dir.resolve("restore-" + host + "-" + System.currentTimeMillis() + ".kvs");
+
+        ManagedChannel channel = ManagedChannelBuilder.forAddress(host, port)
+                .usePlaintext()
+                .maxInboundMessageSize(2 * CHUNK_SIZE)
+                .build();
+        // The blocking stub only supports an overall deadline, so a watchdog cancels the call
+        // once no chunk has arrived for the idle timeout
+        Context.CancellableContext context = Context.current().withCancellation();
+        AtomicLong lastChunkAt = new AtomicLong(System.currentTimeMillis());
+        ScheduledFuture<?> watchdog = taskScheduler.scheduleAtFixedRate(() -> {
+            if (System.currentTimeMillis() - lastChunkAt.get() > idleTimeoutSeconds * 1000) {
+                context.cancel(new TimeoutException("No snapshot data for " + idleTimeoutSeconds + "s"));
+            }
+        }, Duration.ofSeconds(Math.max(idleTimeoutSeconds / 4, 1)));
+
+        Context previous = context.attach();
+        try {
+            try (OutputStream out = Files.newOutputStream(target)) {
+                long expectedOffset = 0;
+                Iterator<SnapshotChunk> chunks = KVServiceGrpc.newBlockingStub(channel)
+                        .withDeadlineAfter(restoreTimeoutSeconds, TimeUnit.SECONDS)
+                        .fetchSnapshot(SnapshotRequest.newBuilder().setWorkerId(workerId).build());
+                while (chunks.hasNext()) {
+                    SnapshotChunk chunk = chunks.next();
+                    lastChunkAt.set(System.currentTimeMillis());
+                    if (chunk.getOffset() != expectedOffset) {
+                        throw new IOException("Snapshot chunk out of order: expected offset " + expectedOffset
+                                + " but got " + chunk.getOffset());
+                    }
+                    chunk.getData().writeTo(out);
+                    expectedOffset += chunk.getData().size();
+                }
+                log.info("Downloaded snapshot from {}:{} ({} bytes)", host, port, expectedOffset);
+            } catch (StatusRuntimeException e) {
+                throw new IOException("Snapshot download from " + host + ":" + port + " failed: " + e.getStatus(), e);
+            } finally {
+                context.detach(previous);
+                context.cancel(null);
+                watchdog.cancel(false);
+                channel.shutdown();
+            }
+            return bulkLoad(target);
+        } finally {
+            Files.deleteIfExists(target);
+        }
+    }
+
+    /**
+     * Ingests a snapshot with batched upserts, one transaction per block. Every block's
+     * checksum is verified before any of its entries are written. Local rows only lose to
+     * newer versions, since the worker may already be taking writes while it restores.
+     */
+    public long bulkLoad(Path snapshot) throws IOException {
+        long start = System.currentTimeMillis();
+        long loaded = SnapshotFile.read(snapshot, entries ->
+                transactionTemplate.executeWithoutResult(status -> writer.upsertAll(entries)));
+        log.info("Bulk loaded {} entries from {} in {} ms", loaded, snapshot, System.currentTimeMillis() - start);
+        // One marker instead of an event per restored key, which could flush the whole log
+        changeLog.append(ChangeEvent.newBuilder().setType(ChangeType.RESTORE));
+        return loaded;
+    }
+
+    private void pruneSnapshots(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> snapshots = files
+                    .filter(p -> p.getFileName().toString().startsWith("snapshot-" + workerId + "-"))
+                    .filter(p -> p.getFileName().toString().endsWith(".kvs"))
+                    .filter(p -> !serving.contains(p))
+                    .sorted(Comparator.comparing(Path::toString).reversed())
+                    .toList();
+            for (Path old : snapshots.subList(Math.min(SNAPSHOTS_TO_KEEP, snapshots.size()), snapshots.size())) {
+                Files.deleteIfExists(old);
+            }
+        }
+    }
+
+    private void release(Path snapshot, InputStream in) {
+        serving.remove(snapshot);
+        closeQuietly(in);
+    }
+
+    private KVEntry toEntry(ResultSet rs) throws SQLException {
+        String clock = rs.getString("vector_clock");
+        try {
+            return KVEntry.builder()
+                    .key(rs.getString("key"))
+                    .value(rs.getString("value"))
+                    .vectorClock(clock != null ? objectMapper.readValue(clock, CLOCK_TYPE) : Map.of())
+                    .expiresAt(rs.getObject("expires_at", Long.class))
+                    .deletedAt(rs.getObject("deleted_at", Long.class))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Unreadable vector clock for key " + rs.getString("key"), e);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,2 @@
+-- Byte-ordered index backing range and prefix scans, independent of the database collation
+CREATE INDEX IF NOT EXISTS idx_kv_store_key_c ON kv_store (key COLLATE "C");
@@ -0,0 +1,263 @@
+package com.distkv.worker.changelog;
+
+import com.distkv.grpc.ChangeEvent;
+import com.distkv.grpc.ChangeType;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeLogTest {
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    @TempDir
+    Path dir;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<ChangeLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (ChangeLog log : opened) {
+            log.close();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void recoverCutsOffPartialRecordBody() throws Exception {
+        ChangeLog log = open(NO_LIMIT, NO_LIMIT);
+        appendPuts(log, 1, 3);
+        crash(log);
+        Path segment = onlySegment();
+
+        // Length prefix promising more bytes than made it to disk
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(segment, StandardOpenOption.APPEND))) {
+            out.writeInt(100);
+            out.write(new byte[10]);
+        }
+
+        assertRecovered(open(NO_LIMIT, NO_LIMIT));
+    }
+
+    @Test
+    void recoverCutsOffPartialLengthPrefix() throws Exception {
+        ChangeLog log = open(NO_LIMIT, NO_LIMIT);
+        appendPuts(log, 1, 3);
+        crash(log);
+        Files.write(onlySegment(), new byte[]{0, 0}, StandardOpenOption.APPEND);
+
+        assertRecovered(open(NO_LIMIT, NO_LIMIT));
+    }
+
+    @Test
+    void cleanReopenContinuesSequenceWithoutRestore() throws Exception {
+        ChangeLog log = open(NO_LIMIT, NO_LIMIT);
+        appendPuts(log, 1, 3);
+        log.close();
+        opened.remove(log);
+
+        ChangeLog reopened = open(NO_LIMIT, NO_LIMIT);
+        appendPuts(reopened, 4, 4);
+
+        RecordingObserver observer = new RecordingObserver();
+        reopened.watch(0, observer);
+        assertThat(observer.take(4)).extracting(ChangeEvent::getSequence).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(observer.events).isEmpty();
+    }
+
+    @Test
+    void followerReadsAcrossSegmentRolls() throws Exception {
+        ChangeLog log = open(200, NO_LIMIT);
+        RecordingObserver observer = new RecordingObserver();
+        log.watch(0, observer);
+
+        appendPuts(log, 1, 40);
+
+        assertThat(segmentFiles()).hasSizeGreaterThan(3);
+        List<ChangeEvent> events = observer.take(40);
+        assertThat(events).extracting(ChangeEvent::getSequence)
+                .containsExactlyElementsOf(sequences(1, 40));
+        assertThat(events).extracting(ChangeEvent::getKey).last().isEqualTo("key-40");
+    }
+
+    @Test
+    void retentionDropsOldestSegmentsWithinBudget() throws Exception {
+        ChangeLog log = open(200, 600);
+        appendPuts(log, 1, 40);
+
+        List<Path> files = segmentFiles();
+        long total = 0;
+        for (Path file : files) {
+            total += Files.size(file);
+        }
+        assertThat(total).isLessThanOrEqualTo(600);
+        long oldest = baseSequence(files.get(0));
+        assertThat(oldest).isGreaterThan(1);
+
+        // 0 replays from the oldest retained event
+        RecordingObserver fromStart = new RecordingObserver();
+        log.watch(0, fromStart);
+        assertThat(fromStart.take((int) (40 - oldest + 1))).extracting(ChangeEvent::getSequence)
+                .containsExactlyElementsOf(sequences(oldest, 40));
+
+        // A position inside a dropped segment can't be resumed
+        RecordingObserver behind = new RecordingObserver();
+        log.watch(1, behind);
+        assertThat(Status.fromThrowable(behind.awaitError()).getCode()).isEqualTo(Status.Code.OUT_OF_RANGE);
+        assertThat(behind.events).isEmpty();
+
+        // The last event of the log is still reachable
+        RecordingObserver tail = new RecordingObserver();
+        log.watch(39, tail);
+        assertThat(tail.take(1)).extracting(ChangeEvent::getSequence).containsExactly(40L);
+    }
+
+    // Had the partial record been left in place, the RESTORE appended on reopen would be
+    // read as part of it and the stream would stall or fail there
+    private void assertRecovered(ChangeLog log) throws InterruptedException {
+        appendPuts(log, 5, 5);
+        RecordingObserver observer = new RecordingObserver();
+        log.watch(0, observer);
+        List<ChangeEvent> events = observer.take(5);
+        assertThat(events).extracting(ChangeEvent::getSequence).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(events).extracting(ChangeEvent::getType).containsExactly(
+                ChangeType.PUT, ChangeType.PUT, ChangeType.PUT, ChangeType.RESTORE, ChangeType.PUT);
+    }
+
+    private ChangeLog open(long segmentBytes, long maxBytes) throws IOException {
+        ChangeLog log = new ChangeLog(executor);
+        ReflectionTestUtils.setField(log, "changelogDir", dir.toString());
+        ReflectionTestUtils.setField(log, "segmentBytes", segmentBytes);
+        ReflectionTestUtils.setField(log, "maxBytes", maxBytes);
+        log.open();
+        opened.add(log);
+        return log;
+    }
+
+    // Stops using the log without close(), so no clean shutdown marker is written
+    private void crash(ChangeLog log) {
+        opened.remove(log);
+    }
+
+    private static void appendPuts(ChangeLog log, int from, int to) {
+        for (int i = from; i <= to; i++) {
+            log.append(ChangeEvent.newBuilder()
+                    .setType(ChangeType.PUT)
+                    .setKey("key-" + i)
+                    .setValue("value-" + i));
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> files = segmentFiles();
+        assertThat(files).hasSize(1);
+        return files.get(0);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static long baseSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - 4));
+    }
+
+    private static List<Long> sequences(long from, long to) {
+        List<Long> sequences = new ArrayList<>();
+        for (long s = from; s <= to; s++) {
+            sequences.add(s);
+        }
+        return sequences;
+    }
+
+    private static class RecordingObserver extends ServerCallStreamObserver<ChangeEvent> {
+        final BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+        final BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+
+        List<ChangeEvent> take(int count) throws InterruptedException {
+            List<ChangeEvent> taken = new ArrayList<>();
+            while (taken.size() < count) {
+                ChangeEvent event = events.poll(5, TimeUnit.SECONDS);
+                assertThat(event).as("event %d of %d", taken.size() + 1, count).isNotNull();
+                taken.add(event);
+            }
+            return taken;
+        }
+
+        Throwable awaitError() throws InterruptedException {
+            Throwable error = errors.poll(5, TimeUnit.SECONDS);
+            assertThat(error).as("stream error").isNotNull();
+            return error;
+        }
+
+        @Override
+        public void onNext(ChangeEvent value) {
+            events.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            errors.add(t);
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.distkv.worker.snapshot;
+
+import com.distkv.worker.model.KVEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsEntriesAcrossBlocks() throws IOException {
+        List<KVEntry> entries = new ArrayList<>();
+        for (int i = 0; i < SnapshotFile.BLOCK_ENTRIES * 2 + 17; i++) {
+            entries.add(KVEntry.builder()
+                    .key(String.format("key-%05d", i))
+                    .value("value-" + i)
+                    .vectorClock(Map.of("w1", (long) i, "w2", 7L))
+                    .expiresAt(i % 3 == 0 ? 1_900_000_000_000L + i : null)
+                    .build());
+        }
+        // Tombstone with no value and an empty clock
+        entries.add(KVEntry.builder().key("key-tombstone").vectorClock(Map.of()).deletedAt(1_800_000_000_000L).build());
+        // Null value on a live entry, which is distinct from an empty one
+        entries.add(KVEntry.builder().key("key-unset").vectorClock(Map.of("w3", 1L)).build());
+        entries.add(KVEntry.builder().key("key-empty").value("").vectorClock(Map.of("w3", 2L)).build());
+        // Supplementary characters are four bytes in UTF-8 and two chars in Java
+        entries.add(KVEntry.builder().key("key-😀").value("𝄞 clef").vectorClock(Map.of("w🚀", 3L)).build());
+        entries.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+
+        Path path = write(entries);
+
+        List<KVEntry> read = new ArrayList<>();
+        List<Integer> blockSizes = new ArrayList<>();
+        long count = SnapshotFile.read(path, block -> {
+            blockSizes.add(block.size());
+            read.addAll(block);
+        });
+
+        assertThat(count).isEqualTo(entries.size());
+        assertThat(blockSizes).containsExactly(SnapshotFile.BLOCK_ENTRIES, SnapshotFile.BLOCK_ENTRIES, 21);
+        assertThat(read).isEqualTo(entries);
+    }
+
+    @Test
+    void roundTripsEmptySnapshot() throws IOException {
+        Path path = write(List.of());
+
+        assertThat(SnapshotFile.read(path, block -> {
+            throw new AssertionError("No blocks expected");
+        })).isZero();
+    }
+
+    @Test
+    void rejectsCorruptedBlock() throws IOException {
+        Path path = write(entries(10));
+
+        // Flip a byte inside the first block's compressed payload, past its length and CRC
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            long offset = SnapshotFile.HEADER_SIZE + 12 + 5;
+            file.seek(offset);
+            int b = file.read();
+            file.seek(offset);
+            file.write(b ^ 0xFF);
+        }
+
+        assertThatThrownBy(() -> SnapshotFile.read(path, block -> {
+            throw new AssertionError("Corrupted block must not be handed out");
+        })).isInstanceOf(IOException.class).hasMessageContaining("Checksum mismatch");
+    }
+
+    @Test
+    void rejectsTruncatedFooter() throws IOException {
+        Path path = write(entries(10));
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        assertThatThrownBy(() -> SnapshotFile.read(path, block -> {
+        })).isInstanceOf(IOException.class).hasMessageContaining("Truncated snapshot file");
+    }
+
+    @Test
+    void rejectsFileWithoutHeader() throws IOException {
+        Path path = dir.resolve("garbage.snap");
+        Files.write(path, new byte[SnapshotFile.HEADER_SIZE + SnapshotFile.FOOTER_SIZE]);
+
+        assertThatThrownBy(() -> SnapshotFile.read(path, block -> {
+        })).isInstanceOf(IOException.class).hasMessageContaining("Not a snapshot file");
+    }
+
+    private Path write(List<KVEntry> entries) throws IOException {
+        Path path = dir.resolve("test.snap");
+        try (SnapshotFile.Writer writer = new SnapshotFile.Writer(path)) {
+            for (KVEntry entry : entries) {
+                writer.add(entry);
+            }
+            assertThat(writer.finish()).isEqualTo(entries.size());
+        }
+        return path;
+    }
+
+    private static List<KVEntry> entries(int count) {
+        List<KVEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(KVEntry.builder()
+                    .key(String.format("key-%02d", i))
+                    .value("value-" + i)
+                    .vectorClock(Map.of("w1", (long) i))
+                    .build());
+        }
+        return entries;
+    }
+}